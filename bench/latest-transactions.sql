@@ -0,0 +1,94 @@
+-- Compares the old correlated MAX(timestamp) query for latest-transaction-per-account
+-- with the LATERAL query used by FinancialDatabaseManager.getLatestTransactions().
+--
+-- Runs in a throwaway schema so it never touches application data:
+--   psql -U postgres -d financial_db -v accounts=100000 -v per_account=20 -f bench/latest-transactions.sql
+
+\if :{?accounts}
+\else
+\set accounts 100000
+\endif
+\if :{?per_account}
+\else
+\set per_account 20
+\endif
+
+DROP SCHEMA IF EXISTS bench_latest CASCADE;
+CREATE SCHEMA bench_latest;
+SET search_path = bench_latest;
+
+CREATE TABLE accounts (
+    id SERIAL PRIMARY KEY,
+    account_number VARCHAR(20) UNIQUE NOT NULL,
+    balance DECIMAL(15,2) NOT NULL,
+    owner_name VARCHAR(100) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    type VARCHAR(20) NOT NULL
+);
+
+CREATE TABLE transactions (
+    id SERIAL PRIMARY KEY,
+    account_number VARCHAR(20) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    description TEXT
+);
+
+INSERT INTO accounts (account_number, balance, owner_name, created_at, type)
+SELECT lpad(g::text, 10, '0'), 0, 'Bench ' || g, NOW(), 'CHECKING'
+FROM generate_series(1, :accounts) g;
+
+-- Timestamps are truncated to the second so same-timestamp ties occur, as they do in production
+INSERT INTO transactions (account_number, amount, type, timestamp, description)
+SELECT lpad((1 + (g % :accounts))::text, 10, '0'),
+       round((random() * 1000)::numeric, 2),
+       'DEPOSIT',
+       date_trunc('second', NOW() - (random() * interval '365 days')),
+       'bench'
+FROM generate_series(1, :accounts * :per_account) g;
+
+CREATE INDEX idx_transactions_account_ts_id ON transactions(account_number, timestamp DESC, id DESC);
+CREATE INDEX idx_transactions_timestamp ON transactions(timestamp);
+ANALYZE accounts;
+ANALYZE transactions;
+
+\echo '=== Old: correlated MAX(timestamp) subquery ==='
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+SELECT a.account_number, t.id AS transaction_id, t.amount, t.type, t.timestamp, t.description
+FROM accounts a
+LEFT JOIN transactions t ON a.account_number = t.account_number
+WHERE t.timestamp = (
+    SELECT MAX(t2.timestamp)
+    FROM transactions t2
+    WHERE t2.account_number = a.account_number)
+ORDER BY a.account_number;
+
+\echo '=== New: LATERAL with (timestamp DESC, id DESC) tiebreak ==='
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+SELECT a.account_number, t.id AS transaction_id, t.amount, t.type, t.timestamp, t.description
+FROM accounts a
+CROSS JOIN LATERAL (
+    SELECT t2.id, t2.amount, t2.type, t2.timestamp, t2.description
+    FROM transactions t2
+    WHERE t2.account_number = a.account_number
+    ORDER BY t2.timestamp DESC, t2.id DESC
+    LIMIT 1) t
+ORDER BY a.account_number;
+
+\echo '=== Rows returned (old query returns duplicates on timestamp ties) ==='
+SELECT
+    (SELECT COUNT(*)
+     FROM accounts a
+     JOIN transactions t ON a.account_number = t.account_number
+     WHERE t.timestamp = (SELECT MAX(t2.timestamp) FROM transactions t2 WHERE t2.account_number = a.account_number)) AS old_rows,
+    (SELECT COUNT(*)
+     FROM accounts a
+     CROSS JOIN LATERAL (
+         SELECT 1 FROM transactions t2
+         WHERE t2.account_number = a.account_number
+         ORDER BY t2.timestamp DESC, t2.id DESC
+         LIMIT 1) t) AS new_rows;
+
+RESET search_path;
+DROP SCHEMA bench_latest CASCADE;
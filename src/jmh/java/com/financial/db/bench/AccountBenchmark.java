@@ -0,0 +1,27 @@
+package com.financial.db.bench;
+
+import com.financial.db.cache.AccountCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AccountBenchmark {
+
+    @Benchmark
+    public Object getAccountByNumber(BenchmarkDatabase db) throws SQLException {
+        return db.accountDAO.getAccountByNumber(db.randomAccountNumber());
+    }
+
+    @Benchmark
+    public Object getAccountByNumberUncached(BenchmarkDatabase db) throws SQLException {
+        String accountNumber = db.randomAccountNumber();
+        AccountCache.getDefault().invalidate(accountNumber);
+        return db.accountDAO.getAccountByNumber(accountNumber);
+    }
+}
@@ -0,0 +1,149 @@
+package com.financial.db.bench;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.bulk.BulkLoader;
+import com.financial.db.dao.AccountDAO;
+import com.financial.db.dao.TransactionDAO;
+import com.financial.db.model.Account;
+import com.financial.db.model.Transaction;
+import com.financial.db.pool.ConnectionPool;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeds the database named by the DB_* variables with benchmark accounts
+ * (numbered BENCH000000000 upwards) and their transactions, and hands
+ * the DAOs to the benchmarks. Existing benchmark rows are replaced on
+ * every trial; other data is left alone.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    // Reserved for benchmark accounts; clear() deletes everything numbered with it
+    private static final String PREFIX = "BENCH";
+
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({"100"})
+    public int transactionsPerAccount;
+
+    public FinancialDatabaseManager manager;
+    public AccountDAO accountDAO;
+    public TransactionDAO transactionDAO;
+
+    @Setup(Level.Trial)
+    public void seed() throws SQLException {
+        manager = new FinancialDatabaseManager();
+        accountDAO = new AccountDAO();
+        transactionDAO = new TransactionDAO();
+
+        clear();
+
+        List<Account> seedAccounts = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            Account account = new Account();
+            account.setAccountNumber(accountNumber(i));
+            account.setBalance(new BigDecimal("1000000000.00"));
+            account.setOwnerName("Benchmark " + i);
+            account.setType(Account.AccountType.CHECKING);
+            seedAccounts.add(account);
+        }
+        accountDAO.createAccounts(seedAccounts);
+
+        try (BulkLoader loader = new BulkLoader()) {
+            loader.loadTransactions(new SeedTransactions(accounts, transactionsPerAccount));
+        } catch (Exception e) {
+            throw new SQLException("Failed to seed transactions", e);
+        }
+        execute("ANALYZE accounts", "ANALYZE transactions");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        clear();
+    }
+
+    public String accountNumber(int index) {
+        return PREFIX + String.format("%09d", index);
+    }
+
+    public String randomAccountNumber() {
+        return accountNumber(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    private void clear() throws SQLException {
+        // Every table referencing accounts before the accounts themselves
+        execute("DELETE FROM balance_snapshots WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM account_balance_slots WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM hot_accounts WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM transfer_inbox WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM account_balances WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM transactions WHERE account_number LIKE '" + PREFIX + "%'",
+                "DELETE FROM accounts WHERE account_number LIKE '" + PREFIX + "%'");
+    }
+
+    private static void execute(String... statements) throws SQLException {
+        try (Connection connection = ConnectionPool.getDefault().getConnection();
+             Statement stmt = connection.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Generates seed transactions lazily so large data sizes never sit in memory
+     */
+    private final class SeedTransactions implements Iterator<Transaction> {
+        private final long total;
+        private final int accountCount;
+        private final LocalDateTime start = LocalDateTime.now().minusDays(365);
+        private long produced;
+
+        private SeedTransactions(int accountCount, int perAccount) {
+            this.accountCount = accountCount;
+            this.total = (long) accountCount * perAccount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return produced < total;
+        }
+
+        @Override
+        public Transaction next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            boolean deposit = random.nextBoolean();
+            BigDecimal amount = BigDecimal.valueOf(random.nextLong(1, 100_000), 2);
+            Transaction transaction = new Transaction(
+                null,
+                accountNumber((int) (produced % accountCount)),
+                deposit ? amount : amount.negate(),
+                deposit ? Transaction.TransactionType.DEPOSIT : Transaction.TransactionType.WITHDRAWAL,
+                start.plusSeconds(random.nextLong(365L * 24 * 3600)),
+                "seed"
+            );
+            produced++;
+            return transaction;
+        }
+    }
+}
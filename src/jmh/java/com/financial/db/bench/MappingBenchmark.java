@@ -0,0 +1,202 @@
+package com.financial.db.bench;
+
+import com.financial.db.mapping.TransactionFlyweight;
+import com.financial.db.mapping.TransactionMapper;
+import com.financial.db.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Row mapping cost without a database. Rows come from an in-memory
+ * ResultSet that, like the driver, hands out a fresh String, BigDecimal and
+ * timestamp object on every getter call and resolves labels through a map.
+ * The proxy's own dispatch and boxing are the same for every variant, so
+ * compare the variants with each other rather than with absolute figures.
+ * Run with the gc profiler (the default in build.gradle) to see allocation
+ * per row.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Thread)
+public class MappingBenchmark {
+    private static final String[] COLUMNS = { "id", "account_number", "amount", "type", "timestamp", "description" };
+    private static final Transaction.TransactionType[] TYPES = Transaction.TransactionType.values();
+
+    @Param({"1000"})
+    public int rows;
+
+    private Object[][] data;
+
+    @Setup
+    public void generate() {
+        data = new Object[rows][];
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[] {
+                (long) i + 1_000_000,
+                String.format("BENCH%09d", i % 100),
+                new BigDecimal(i % 5000).movePointLeft(2),
+                TYPES[i % TYPES.length].name(),
+                base.plusSeconds(i),
+                "Benchmark transaction " + i
+            };
+        }
+    }
+
+    /**
+     * The mapping the DAOs used before: label lookups, setters, valueOf and Timestamp conversion
+     */
+    @Benchmark
+    public void labelLookup(Blackhole bh) throws SQLException {
+        ResultSet rs = open();
+        while (rs.next()) {
+            Transaction transaction = new Transaction();
+            transaction.setId(rs.getLong("id"));
+            transaction.setAccountNumber(rs.getString("account_number"));
+            transaction.setAmount(rs.getBigDecimal("amount"));
+            transaction.setType(Transaction.TransactionType.valueOf(rs.getString("type")));
+            transaction.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+            transaction.setDescription(rs.getString("description"));
+            bh.consume(transaction);
+        }
+    }
+
+    @Benchmark
+    public void mapper(Blackhole bh) throws SQLException {
+        ResultSet rs = open();
+        TransactionMapper mapper = new TransactionMapper();
+        while (rs.next()) {
+            bh.consume(mapper.read(rs));
+        }
+    }
+
+    @Benchmark
+    public void mapperView(Blackhole bh) throws SQLException {
+        ResultSet rs = open();
+        TransactionMapper mapper = new TransactionMapper();
+        while (rs.next()) {
+            bh.consume(mapper.readView(rs));
+        }
+    }
+
+    @Benchmark
+    public void mapperFlyweight(Blackhole bh) throws SQLException {
+        ResultSet rs = open();
+        TransactionMapper mapper = new TransactionMapper();
+        TransactionFlyweight row = new TransactionFlyweight();
+        while (rs.next()) {
+            bh.consume(mapper.readInto(rs, row));
+        }
+    }
+
+    private ResultSet open() {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class }, new InMemoryRows(data));
+    }
+
+    private static final class InMemoryRows implements InvocationHandler {
+        private static final Map<String, Integer> LABELS = new HashMap<>();
+        static {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                LABELS.put(COLUMNS[i], i + 1);
+            }
+        }
+
+        private final Object[][] data;
+        private int row = -1;
+
+        InMemoryRows(Object[][] data) {
+            this.data = data;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next":
+                    return ++row < data.length;
+                case "getMetaData":
+                    return metaData();
+                case "findColumn":
+                    return column(args[0]);
+                case "getLong":
+                    return (Long) value(args[0]);
+                case "getString":
+                    return new String((String) value(args[0]));
+                case "getBigDecimal": {
+                    BigDecimal value = (BigDecimal) value(args[0]);
+                    return new BigDecimal(value.unscaledValue(), value.scale());
+                }
+                case "getTimestamp":
+                    return Timestamp.valueOf((LocalDateTime) value(args[0]));
+                case "getObject":
+                    if (args.length == 2 && args[1] == LocalDateTime.class) {
+                        LocalDateTime value = (LocalDateTime) value(args[0]);
+                        return LocalDateTime.of(value.toLocalDate(), value.toLocalTime());
+                    }
+                    return value(args[0]);
+                case "wasNull":
+                    return false;
+                case "close":
+                    return null;
+                default:
+                    throw new SQLException("Not supported by the benchmark result set: " + method.getName());
+            }
+        }
+
+        private Object value(Object column) throws SQLException {
+            return data[row][column(column) - 1];
+        }
+
+        private static int column(Object column) throws SQLException {
+            if (column instanceof Integer) {
+                return (Integer) column;
+            }
+            Integer index = LABELS.get(column);
+            if (index == null) {
+                throw new SQLException("No column " + column);
+            }
+            return index;
+        }
+
+        private static ResultSetMetaData metaData() {
+            return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return COLUMNS.length;
+                        case "getColumnLabel":
+                        case "getColumnName":
+                            return COLUMNS[(Integer) args[0] - 1];
+                        default:
+                            throw new SQLException("Not supported by the benchmark metadata: " + method.getName());
+                    }
+                });
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.financial.db.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Deposits and withdrawals from concurrent threads. With hotAccounts=1 every
+ * thread posts to the same account and contends on its row lock.
+ */
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@State(Scope.Benchmark)
+public class PostingBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"1", "100"})
+    public int hotAccounts;
+
+    @Benchmark
+    public void deposit(BenchmarkDatabase db) {
+        db.manager.deposit(pick(db), AMOUNT, "bench");
+    }
+
+    @Benchmark
+    public void withdraw(BenchmarkDatabase db) {
+        db.manager.withdraw(pick(db), AMOUNT, "bench");
+    }
+
+    private String pick(BenchmarkDatabase db) {
+        return db.accountNumber(ThreadLocalRandom.current().nextInt(Math.min(hotAccounts, db.accounts)));
+    }
+}
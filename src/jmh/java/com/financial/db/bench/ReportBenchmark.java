@@ -0,0 +1,88 @@
+package com.financial.db.bench;
+
+import com.financial.db.analytics.ColumnarLedger;
+import com.financial.db.analytics.LedgerFilter;
+import com.financial.db.analytics.LedgerTotals;
+import com.financial.db.model.AccountTransactionPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole-table reports. These scan everything in the database, so run them
+ * against a dedicated database. The snapshot benchmarks answer the same
+ * questions from a {@link ColumnarLedger} loaded once per trial.
+ */
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class ReportBenchmark {
+
+    @Benchmark
+    public List<AccountTransactionPair> getAccountTransactions(BenchmarkDatabase db) {
+        return db.manager.getAccountTransactions();
+    }
+
+    @Benchmark
+    public long streamAccountTransactions(BenchmarkDatabase db) {
+        try (Stream<AccountTransactionPair> pairs = db.manager.streamAccountTransactions(1000)) {
+            return pairs.count();
+        }
+    }
+
+    @Benchmark
+    public Map<String, ?> getLatestTransactions(BenchmarkDatabase db) {
+        return db.manager.getLatestTransactions();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> getAccountBalances(BenchmarkDatabase db) {
+        return db.manager.getAccountBalances();
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> snapshotAccountBalances(LedgerState ledger) {
+        return ledger.ledger.snapshot().getAccountBalances();
+    }
+
+    @Benchmark
+    public Map<?, LedgerTotals> snapshotDailyTotals(LedgerState ledger) {
+        return ledger.ledger.snapshot().totalsByTimeBucket(Duration.ofDays(1), LedgerFilter.all());
+    }
+
+    @State(Scope.Benchmark)
+    public static class LedgerState {
+        ColumnarLedger ledger;
+
+        @Setup(Level.Trial)
+        public void load(BenchmarkDatabase db) throws SQLException {
+            // Taking the database state makes JMH seed it first
+            ledger = new ColumnarLedger();
+            ledger.refresh();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws Exception {
+            ledger.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.financial.db.bench;
+
+import com.financial.db.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TransactionBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("12.34");
+
+    @Benchmark
+    public void createTransaction(BenchmarkDatabase db) {
+        db.manager.createTransaction(db.randomAccountNumber(), AMOUNT, "DEPOSIT", "bench");
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactionsByAccount(BenchmarkDatabase db) throws SQLException {
+        return db.transactionDAO.getTransactionsByAccount(db.randomAccountNumber());
+    }
+
+    @Benchmark
+    public Object getTransactionsFirstPage(BenchmarkDatabase db) throws SQLException {
+        return db.transactionDAO.getTransactionsPage(db.randomAccountNumber(), 50, null);
+    }
+}
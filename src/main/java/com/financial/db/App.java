@@ -4,15 +4,28 @@ import java.sql.Connection;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import com.financial.db.dao.AccountBalanceDAO;
 import com.financial.db.dao.AccountDAO;
 import com.financial.db.dao.TransactionDAO;
 import com.financial.db.model.Account;
 import com.financial.db.model.Transaction;
 import com.financial.db.model.AccountTransactionPair;
+import com.financial.db.balance.BalanceSnapshots;
+import com.financial.db.balance.HotAccounts;
+import com.financial.db.cache.AccountCache;
+import com.financial.db.load.LoadConfig;
+import com.financial.db.load.LoadGenerator;
+import com.financial.db.partition.PartitionManager;
+import com.financial.db.shard.CrossShardTransfers;
+import com.financial.db.shard.ShardRebalancer;
+import com.financial.db.shard.ShardedDatabase;
 import com.financial.db.FinancialDatabaseManager;
 
 public class App {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runCommand(args[0]));
+        }
         try {
             FinancialDatabaseManager manager = new FinancialDatabaseManager();
             System.out.println("Financial Database Manager is running!");
@@ -88,4 +101,73 @@ public class App {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Maintenance commands, e.g. {@code java -jar app.jar verify-balances}
+     * @return Process exit code
+     */
+    private static int runCommand(String command) {
+        try (AccountBalanceDAO balanceDAO = new AccountBalanceDAO()) {
+            switch (command) {
+                case "verify-balances":
+                    List<String> mismatched = balanceDAO.verify();
+                    for (String accountNumber : mismatched) {
+                        System.out.println("Mismatch: " + accountNumber);
+                    }
+                    System.out.println(mismatched.isEmpty() ? "Balances match the ledger" :
+                                       mismatched.size() + " accounts out of step with the ledger");
+                    return mismatched.isEmpty() ? 0 : 1;
+                case "rebuild-balances":
+                    System.out.println("Rebuilt balances for " + balanceDAO.rebuild() + " accounts");
+                    return 0;
+                case "maintain-partitions":
+                    try (PartitionManager partitions = new PartitionManager()) {
+                        System.out.println("Created or retired " + partitions.maintain() + " transaction partitions");
+                    }
+                    return 0;
+                case "snapshot-balances":
+                    try (BalanceSnapshots snapshots = new BalanceSnapshots()) {
+                        System.out.println("Wrote " + snapshots.takeSnapshots() + " account balance snapshots");
+                    }
+                    return 0;
+                case "load":
+                    LoadConfig loadConfig = LoadConfig.fromEnv();
+                    try (LoadGenerator generator = new LoadGenerator(loadConfig)) {
+                        if (loadConfig.isSeedData()) {
+                            generator.seed();
+                        }
+                        System.out.print(generator.run().toText());
+                    }
+                    return 0;
+                case "consolidate-hot-accounts":
+                    System.out.println("Consolidated " + HotAccounts.getDefault().consolidateAll() + " hot accounts");
+                    return 0;
+                case "rebalance-shards":
+                case "relay-transfers":
+                    ShardedDatabase shards = ShardedDatabase.getDefault();
+                    if (shards == null) {
+                        System.err.println("Sharding is not configured; set DB_SHARDS");
+                        return 2;
+                    }
+                    if (command.equals("rebalance-shards")) {
+                        System.out.println("Moved " + new ShardRebalancer(shards).rebalance() + " buckets");
+                    } else {
+                        try (CrossShardTransfers transfers = new CrossShardTransfers(shards, AccountCache.getDefault())) {
+                            System.out.println("Completed " + transfers.relayPending() + " pending transfers");
+                        }
+                    }
+                    return 0;
+                default:
+                    System.err.println("Unknown command: " + command);
+                    System.err.println("Commands: verify-balances, rebuild-balances, maintain-partitions, " +
+                                       "snapshot-balances, consolidate-hot-accounts, rebalance-shards, " +
+                                       "relay-transfers, load");
+                    return 2;
+            }
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+            return 1;
+        }
+    }
 }
@@ -1,43 +1,216 @@
 package com.financial.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.financial.db.admission.AdmissionController;
+import com.financial.db.admission.Priority;
+import com.financial.db.balance.HotAccountSet;
+import com.financial.db.balance.HotAccounts;
+import com.financial.db.cache.AccountCache;
+import com.financial.db.mapping.AccountMapper;
+import com.financial.db.mapping.TransactionMapper;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
 import com.financial.db.model.Account;
+import com.financial.db.model.Money;
 import com.financial.db.model.Transaction;
 import com.financial.db.model.AccountTransactionPair;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.PoolConfig;
+import com.financial.db.pool.ReadConsistency;
+import com.financial.db.pool.ReadRouter;
+import com.financial.db.shard.CrossShardTransfers;
+import com.financial.db.shard.ShardedDatabase;
+import com.financial.db.util.CursorStream;
 
 public class FinancialDatabaseManager implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(FinancialDatabaseManager.class);
-    private static final String DB_HOST = System.getenv("DB_HOST");
-    private static final String DB_PORT = System.getenv("DB_PORT");
-    private static final String DB_NAME = System.getenv("DB_NAME");
-    private static final String DB_URL = "jdbc:postgresql://" +
-        (DB_HOST != null ? DB_HOST : "localhost") + ":" +
-        (DB_PORT != null ? DB_PORT : "5432") + "/" +
-        (DB_NAME != null ? DB_NAME : "financial_db");
-    private static final String USER = System.getenv("DB_USER");
-    private static final String PASS = System.getenv("DB_PASS");
-
-    private Connection connection;
 
+    /**
+     * Credit an account and record the ledger row in one statement. Parameters:
+     * amount, account number, amount, description. Updates one row, or none if
+     * the account does not exist.
+     */
+    public static final String DEPOSIT_SQL = depositSql("?");
+
+    // Same parameters, with the amounts bound as Money minor units
+    private static final String DEPOSIT_MINOR_UNITS_SQL = depositSql(Money.PARAMETER);
+
+    /**
+     * Debit an account only if it covers the amount, and record the ledger row,
+     * in one statement. Parameters: amount, account number, amount, negated
+     * amount, description. Updates one row, or none if the account is missing
+     * or short of funds.
+     */
+    public static final String WITHDRAW_SQL = withdrawSql("?");
+
+    private static final String WITHDRAW_MINOR_UNITS_SQL = withdrawSql(Money.PARAMETER);
+
+    // Hot accounts: credit this connection's slot instead of the account row; none if the account is not hot
+    private static final String HOT_DEPOSIT_SQL = hotDepositSql("?");
+    private static final String HOT_DEPOSIT_MINOR_UNITS_SQL = hotDepositSql(Money.PARAMETER);
+
+    // Hot accounts: lock the account row, then read the slots in a later statement so they include committed credits
+    private static final String HOT_BALANCE_LOCK_SQL =
+        "SELECT balance FROM accounts WHERE account_number = ? FOR NO KEY UPDATE";
+    private static final String SLOT_BALANCE_SQL =
+        "SELECT COALESCE(SUM(balance), 0) FROM account_balance_slots WHERE account_number = ?";
+
+    // Hot accounts: debit the account row unconditionally once the caller has checked row plus slots
+    private static final String HOT_WITHDRAW_SQL = hotWithdrawSql("?");
+    private static final String HOT_WITHDRAW_MINOR_UNITS_SQL = hotWithdrawSql(Money.PARAMETER);
+
+    private static final String TRANSFER_LOCK_SQL =
+        "SELECT account_number, balance FROM accounts WHERE account_number IN (?, ?) " +
+        "ORDER BY account_number FOR NO KEY UPDATE";
+
+    private static final String TRANSFER_SQL =
+        "WITH debit AS (UPDATE accounts SET balance = balance - ? WHERE account_number = ?), " +
+        "credit AS (UPDATE accounts SET balance = balance + ? WHERE account_number = ?) " +
+        "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+        "VALUES (?, ?, 'TRANSFER', NOW(), ?), (?, ?, 'TRANSFER', NOW(), ?)";
+
+    private static final String ACCOUNT_TRANSACTIONS_SQL =
+        "SELECT a.id as account_id, a.account_number, a.balance + COALESCE(s.balance, 0) AS balance, a.owner_name, " +
+        "t.id as transaction_id, t.amount, t.type, t.timestamp, t.description " +
+        "FROM accounts a " +
+        "INNER JOIN transactions t ON a.account_number = t.account_number " +
+        "LEFT JOIN (SELECT account_number, SUM(balance) AS balance FROM account_balance_slots " +
+        "    GROUP BY account_number) s ON s.account_number = a.account_number " +
+        "ORDER BY a.id, t.timestamp DESC";
+
+    // One index probe per account on (account_number, timestamp DESC, id DESC); accounts without transactions drop out
+    private static final String LATEST_TRANSACTIONS_SELECT =
+        "SELECT a.account_number, " +
+        "t.id as transaction_id, t.amount, t.type, t.timestamp, t.description " +
+        "FROM accounts a " +
+        "CROSS JOIN LATERAL (" +
+        "    SELECT t2.id, t2.amount, t2.type, t2.timestamp, t2.description " +
+        "    FROM transactions t2 " +
+        "    WHERE t2.account_number = a.account_number " +
+        "    ORDER BY t2.timestamp DESC, t2.id DESC " +
+        "    LIMIT 1) t ";
+
+    private static final OperationMetrics CREATE_ACCOUNT = DbMetrics.operation("FinancialDatabaseManager.createAccount");
+    private static final OperationMetrics CREATE_TRANSACTION = DbMetrics.operation("FinancialDatabaseManager.createTransaction");
+    private static final OperationMetrics DEPOSIT = DbMetrics.operation("FinancialDatabaseManager.deposit");
+    private static final OperationMetrics WITHDRAW = DbMetrics.operation("FinancialDatabaseManager.withdraw");
+    private static final OperationMetrics TRANSFER = DbMetrics.operation("FinancialDatabaseManager.transfer");
+    private static final OperationMetrics ACCOUNT_TRANSACTIONS = DbMetrics.operation("FinancialDatabaseManager.getAccountTransactions");
+    private static final OperationMetrics STREAM_ACCOUNT_TRANSACTIONS = DbMetrics.operation("FinancialDatabaseManager.streamAccountTransactions");
+    private static final OperationMetrics LATEST_TRANSACTIONS = DbMetrics.operation("FinancialDatabaseManager.getLatestTransactions");
+    private static final OperationMetrics ACCOUNT_BALANCES = DbMetrics.operation("FinancialDatabaseManager.getAccountBalances");
+
+    private final ConnectionPool pool;
+    private final ReadRouter readRouter;
+    private final ShardedDatabase shards;
+    private final AdmissionController admission;
+    private final boolean ownsPool;
+
+    private static String depositSql(String amount) {
+        return "WITH credited AS (" +
+            "    UPDATE accounts SET balance = balance + " + amount + " WHERE account_number = ? RETURNING account_number) " +
+            "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+            "SELECT account_number, " + amount + ", 'DEPOSIT', NOW(), ? FROM credited";
+    }
+
+    private static String withdrawSql(String amount) {
+        return "WITH debited AS (" +
+            "    UPDATE accounts SET balance = balance - " + amount + " " +
+            "    WHERE account_number = ? AND balance >= " + amount + " RETURNING account_number) " +
+            "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+            "SELECT account_number, " + amount + ", 'WITHDRAWAL', NOW(), ? FROM debited";
+    }
+
+    private static String hotDepositSql(String amount) {
+        return "WITH credited AS (" +
+            "    UPDATE account_balance_slots s SET balance = s.balance + " + amount + " FROM hot_accounts h " +
+            "    WHERE h.account_number = ? AND s.account_number = h.account_number " +
+            "    AND s.slot = pg_backend_pid() % h.slots RETURNING s.account_number) " +
+            "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+            "SELECT account_number, " + amount + ", 'DEPOSIT', NOW(), ? FROM credited";
+    }
+
+    private static String hotWithdrawSql(String amount) {
+        return "WITH debited AS (" +
+            "    UPDATE accounts SET balance = balance - " + amount + " WHERE account_number = ? RETURNING account_number) " +
+            "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+            "SELECT account_number, " + amount + ", 'WITHDRAWAL', NOW(), ? FROM debited";
+    }
+
+    /**
+     * Use the process-wide connection pool configured from the environment,
+     * and start the hot account consolidation that goes with it
+     */
     public FinancialDatabaseManager() {
-        try {
-            connection = DriverManager.getConnection(DB_URL, USER, PASS);
-            logger.info("Successfully connected to the database");
-        } catch (SQLException e) {
-            logger.error("Failed to connect to database", e);
-            throw new RuntimeException("Database connection failed", e);
-        }
+        this(ConnectionPool.getDefault(), ReadRouter.getDefault(), ShardedDatabase.getDefault(), false);
+        HotAccounts.getDefault();
+    }
+
+    /**
+     * Use a caller-managed connection pool for reads and writes
+     * @param pool Connection pool to borrow connections from
+     */
+    public FinancialDatabaseManager(ConnectionPool pool) {
+        this(pool, new ReadRouter(pool), false);
+    }
+
+    /**
+     * Use a caller-managed connection pool for writes and a router for reports
+     * @param pool Connection pool to borrow write connections from
+     * @param readRouter Router for read-only reports
+     */
+    public FinancialDatabaseManager(ConnectionPool pool, ReadRouter readRouter) {
+        this(pool, readRouter, null, false);
+    }
+
+    /**
+     * Spread accounts over a caller-managed set of shards. Work that is not
+     * tied to an account uses the first shard.
+     * @param shards Shards to route accounts to
+     */
+    public FinancialDatabaseManager(ShardedDatabase shards) {
+        this(shards.getShard(0), new ReadRouter(shards.getShard(0)), shards, false);
+    }
+
+    /**
+     * Create a dedicated connection pool that is closed together with this manager
+     * @param config Pool configuration
+     */
+    public FinancialDatabaseManager(PoolConfig config) {
+        this(new ConnectionPool(config), true);
+    }
+
+    private FinancialDatabaseManager(ConnectionPool pool, boolean ownsPool) {
+        this(pool, new ReadRouter(pool), null, ownsPool);
+    }
+
+    private FinancialDatabaseManager(ConnectionPool pool, ReadRouter readRouter, boolean ownsPool) {
+        this(pool, readRouter, null, ownsPool);
+    }
+
+    private FinancialDatabaseManager(ConnectionPool pool, ReadRouter readRouter, ShardedDatabase shards,
+                                     boolean ownsPool) {
+        this.pool = pool;
+        this.readRouter = readRouter;
+        this.shards = shards;
+        this.admission = AdmissionController.getDefault();
+        this.ownsPool = ownsPool;
     }
 
     /**
@@ -49,15 +222,21 @@ public class FinancialDatabaseManager implements AutoCloseable {
      */
     public void createAccount(String accountNumber, BigDecimal balance, String ownerName, String type) {
         String sql = "INSERT INTO accounts (account_number, balance, owner_name, created_at, type) VALUES (?, ?, ?, NOW(), ?)";
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CREATE_ACCOUNT, accountNumber);
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, accountNumber);
             stmt.setBigDecimal(2, balance);
             stmt.setString(3, ownerName);
             stmt.setString(4, type);
-            stmt.executeUpdate();
+            rows = stmt.executeUpdate();
+            getAccountCache().invalidate(accountNumber);
         } catch (SQLException e) {
             logger.error("Error creating account", e);
             throw new RuntimeException("Failed to create account", e);
+        } finally {
+            CREATE_ACCOUNT.record(start, rows);
         }
     }
 
@@ -70,249 +249,750 @@ public class FinancialDatabaseManager implements AutoCloseable {
      */
     public void createTransaction(String accountNumber, BigDecimal amount, String type, String description) {
         String sql = "INSERT INTO transactions (account_number, amount, type, timestamp, description) VALUES (?, ?, ?, NOW(), ?)";
-        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CREATE_TRANSACTION, accountNumber);
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, accountNumber);
             stmt.setBigDecimal(2, amount);
             stmt.setString(3, type);
             stmt.setString(4, description);
-            stmt.executeUpdate();
+            rows = stmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Error creating transaction", e);
             throw new RuntimeException("Failed to create transaction", e);
+        } finally {
+            CREATE_TRANSACTION.record(start, rows);
         }
     }
 
     /**
-     * Make a deposit to an account
+     * Make a deposit to an account. The balance update and the ledger insert
+     * run as one statement, so a deposit is a single round trip. Deposits to a
+     * hot account credit one of its slots and leave the account row alone.
      * @param accountNumber Account number
      * @param amount Amount to deposit
      * @param description Transaction description
      */
     public void deposit(String accountNumber, BigDecimal amount, String description) {
-        try {
-            // Start transaction
-            getConnection().setAutoCommit(false);
-
-            // Update account balance
-            String updateSql = "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
-            try (PreparedStatement updateStmt = getConnection().prepareStatement(updateSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, accountNumber);
-                updateStmt.executeUpdate();
-            }
+        deposit(DEPOSIT_SQL, HOT_DEPOSIT_SQL, accountNumber, amount, 0, description);
+    }
 
-            // Create transaction record
-            createTransaction(accountNumber, amount, "DEPOSIT", description);
+    /**
+     * Fixed-point variant of {@link #deposit(String, BigDecimal, String)} that
+     * binds the amount without creating a BigDecimal
+     * @param accountNumber Account number
+     * @param amountMinorUnits Amount to deposit in {@link Money} minor units
+     * @param description Transaction description
+     */
+    public void depositMinorUnits(String accountNumber, long amountMinorUnits, String description) {
+        deposit(DEPOSIT_MINOR_UNITS_SQL, HOT_DEPOSIT_MINOR_UNITS_SQL, accountNumber, null, amountMinorUnits,
+            description);
+    }
 
-            // Commit transaction
-            getConnection().commit();
-            logger.info("Deposit of {} completed successfully for account {}", amount, accountNumber);
-        } catch (SQLException e) {
-            try {
-                getConnection().rollback();
-            } catch (SQLException ex) {
-                logger.error("Error rolling back transaction", ex);
+    private void deposit(String sql, String hotSql, String accountNumber, BigDecimal amount, long amountMinorUnits,
+                         String description) {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(DEPOSIT, accountNumber)) {
+            // A hot account that has since been switched back credits nothing, so fall back to the account row
+            boolean credited = getHotAccounts().contains(accountNumber) &&
+                executeDeposit(connection, hotSql, accountNumber, amount, amountMinorUnits, description);
+            if (!credited && !executeDeposit(connection, sql, accountNumber, amount, amountMinorUnits, description)) {
+                throw new RuntimeException("Account not found");
             }
+            rows = 1;
+            getAccountCache().invalidate(accountNumber);
+            if (logger.isInfoEnabled()) {
+                logger.info("Deposit of {} completed successfully for account {}",
+                    amount != null ? amount : Money.format(amountMinorUnits), accountNumber);
+            }
+        } catch (SQLException e) {
             logger.error("Error processing deposit", e);
             throw new RuntimeException("Deposit failed", e);
         } finally {
-            try {
-                getConnection().setAutoCommit(true);
-            } catch (SQLException e) {
-                logger.error("Error resetting auto-commit", e);
-            }
+            DEPOSIT.record(start, rows);
+        }
+    }
+
+    private static boolean executeDeposit(Connection connection, String sql, String accountNumber, BigDecimal amount,
+                                          long amountMinorUnits, String description) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            bindAmount(stmt, 1, amount, amountMinorUnits);
+            stmt.setString(2, accountNumber);
+            bindAmount(stmt, 3, amount, amountMinorUnits);
+            stmt.setString(4, description);
+            return stmt.executeUpdate() > 0;
         }
     }
 
     /**
-     * Withdraw money from an account
+     * Withdraw money from an account. The balance check, the debit and the
+     * ledger insert run as one conditional statement, so concurrent
+     * withdrawals cannot overdraw the account. A hot account is locked and
+     * checked against its row plus its slots instead, in one transaction.
      * @param accountNumber Account number
      * @param amount Amount to withdraw
      * @param description Transaction description
      */
     public void withdraw(String accountNumber, BigDecimal amount, String description) {
-        try {
-            // Start transaction
-            getConnection().setAutoCommit(false);
-
-            // Check if account exists and has sufficient balance
-            String checkSql = "SELECT balance FROM accounts WHERE account_number = ?";
-            try (PreparedStatement checkStmt = getConnection().prepareStatement(checkSql)) {
-                checkStmt.setString(1, accountNumber);
-                try (ResultSet rs = checkStmt.executeQuery()) {
-                    if (!rs.next()) {
-                        throw new RuntimeException("Account not found");
-                    }
-                    BigDecimal currentBalance = rs.getBigDecimal("balance");
-                    if (currentBalance.compareTo(amount) < 0) {
-                        throw new RuntimeException("Insufficient funds");
+        withdraw(WITHDRAW_SQL, HOT_WITHDRAW_SQL, accountNumber, amount, 0, description);
+    }
+
+    /**
+     * Fixed-point variant of {@link #withdraw(String, BigDecimal, String)} that
+     * binds the amount without creating a BigDecimal
+     * @param accountNumber Account number
+     * @param amountMinorUnits Amount to withdraw in {@link Money} minor units
+     * @param description Transaction description
+     */
+    public void withdrawMinorUnits(String accountNumber, long amountMinorUnits, String description) {
+        withdraw(WITHDRAW_MINOR_UNITS_SQL, HOT_WITHDRAW_MINOR_UNITS_SQL, accountNumber, null, amountMinorUnits,
+            description);
+    }
+
+    private void withdraw(String sql, String hotSql, String accountNumber, BigDecimal amount, long amountMinorUnits,
+                          String description) {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(WITHDRAW, accountNumber)) {
+            if (getHotAccounts().contains(accountNumber)) {
+                withdrawHot(connection, hotSql, accountNumber, amount, amountMinorUnits, description);
+            } else {
+                try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                    bindAmount(stmt, 1, amount, amountMinorUnits);
+                    stmt.setString(2, accountNumber);
+                    bindAmount(stmt, 3, amount, amountMinorUnits);
+                    bindAmount(stmt, 4, amount != null ? amount.negate() : null, Money.negate(amountMinorUnits));
+                    stmt.setString(5, description);
+                    if (stmt.executeUpdate() == 0) {
+                        // Only the failure path pays a second round trip to explain itself
+                        throw new RuntimeException(accountExists(connection, accountNumber) ?
+                            "Insufficient funds" : "Account not found");
                     }
                 }
             }
-
-            // Update account balance
-            String updateSql = "UPDATE accounts SET balance = balance - ? WHERE account_number = ?";
-            try (PreparedStatement updateStmt = getConnection().prepareStatement(updateSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, accountNumber);
-                updateStmt.executeUpdate();
+            rows = 1;
+            getAccountCache().invalidate(accountNumber);
+            if (logger.isInfoEnabled()) {
+                logger.info("Withdrawal of {} completed successfully for account {}",
+                    amount != null ? amount : Money.format(amountMinorUnits), accountNumber);
             }
-
-            // Create transaction record
-            createTransaction(accountNumber, amount.negate(), "WITHDRAWAL", description);
-
-            // Commit transaction
-            getConnection().commit();
-            logger.info("Withdrawal of {} completed successfully for account {}", amount, accountNumber);
         } catch (SQLException e) {
-            try {
-                getConnection().rollback();
-            } catch (SQLException ex) {
-                logger.error("Error rolling back transaction", ex);
-            }
             logger.error("Error processing withdrawal", e);
             throw new RuntimeException("Withdrawal failed", e);
         } finally {
+            WITHDRAW.record(start, rows);
+        }
+    }
+
+    private static void withdrawHot(Connection connection, String sql, String accountNumber, BigDecimal amount,
+                                    long amountMinorUnits, String description) throws SQLException {
+        try {
+            connection.setAutoCommit(false);
+            BigDecimal balance = lockBalance(connection, accountNumber);
+            if (balance == null) {
+                throw new RuntimeException("Account not found");
+            }
+            if (balance.compareTo(amount != null ? amount : Money.toBigDecimal(amountMinorUnits)) < 0) {
+                throw new RuntimeException("Insufficient funds");
+            }
+            // The row alone may go negative; the slots cover the difference until they are folded back in
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                bindAmount(stmt, 1, amount, amountMinorUnits);
+                stmt.setString(2, accountNumber);
+                bindAmount(stmt, 3, amount != null ? amount.negate() : null, Money.negate(amountMinorUnits));
+                stmt.setString(4, description);
+                stmt.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            rollback(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Lock a hot account's row and read its full balance. The row lock
+     * serializes debits; credits keep landing in the slots, which only adds
+     * to the balance read here.
+     * @return Row plus slot balances, or null if the account does not exist
+     */
+    private static BigDecimal lockBalance(Connection connection, String accountNumber) throws SQLException {
+        BigDecimal balance;
+        try (PreparedStatement stmt = connection.prepareStatement(HOT_BALANCE_LOCK_SQL)) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                balance = rs.getBigDecimal(1);
+            }
+        }
+        return balance.add(slotBalance(connection, accountNumber));
+    }
+
+    private static BigDecimal slotBalance(Connection connection, String accountNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(SLOT_BALANCE_SQL)) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    /**
+     * Move money between two accounts. Both rows are locked in account number
+     * order, so opposing transfers between the same accounts cannot deadlock.
+     * A hot payer's slots count towards its balance.
+     * Accounts on different shards are settled through {@link CrossShardTransfers}
+     * instead: the payer is debited at once and the payee credited as soon as
+     * the transfer is delivered.
+     * @param fromAccountNumber Account to debit
+     * @param toAccountNumber Account to credit
+     * @param amount Amount to transfer; must be positive
+     * @param description Transaction description recorded on both legs
+     */
+    public void transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount, String description) {
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        if (shards != null && shards.shardOf(fromAccountNumber) != shards.shardOf(toAccountNumber)) {
             try {
-                getConnection().setAutoCommit(true);
+                new CrossShardTransfers(shards, getAccountCache()).transfer(fromAccountNumber, toAccountNumber,
+                    amount, description);
+                rows = 2;
+                return;
             } catch (SQLException e) {
-                logger.error("Error resetting auto-commit", e);
+                logger.error("Error processing transfer", e);
+                throw new RuntimeException("Transfer failed", e);
+            } finally {
+                TRANSFER.record(start, rows);
+            }
+        }
+        try (Connection connection = getConnection(TRANSFER, fromAccountNumber)) {
+            try {
+                connection.setAutoCommit(false);
+
+                // Lock both accounts in a consistent order and read the payer's balance
+                BigDecimal fromBalance = null;
+                boolean toExists = false;
+                try (PreparedStatement lockStmt = connection.prepareStatement(TRANSFER_LOCK_SQL)) {
+                    lockStmt.setString(1, fromAccountNumber);
+                    lockStmt.setString(2, toAccountNumber);
+                    try (ResultSet rs = lockStmt.executeQuery()) {
+                        while (rs.next()) {
+                            if (fromAccountNumber.equals(rs.getString("account_number"))) {
+                                fromBalance = rs.getBigDecimal("balance");
+                            } else {
+                                toExists = true;
+                            }
+                        }
+                    }
+                }
+                if (fromBalance == null || !toExists) {
+                    throw new RuntimeException("Account not found");
+                }
+                if (getHotAccounts().contains(fromAccountNumber)) {
+                    fromBalance = fromBalance.add(slotBalance(connection, fromAccountNumber));
+                }
+                if (fromBalance.compareTo(amount) < 0) {
+                    throw new RuntimeException("Insufficient funds");
+                }
+
+                // Apply both balance changes and both ledger legs in one statement
+                try (PreparedStatement transferStmt = connection.prepareStatement(TRANSFER_SQL)) {
+                    transferStmt.setBigDecimal(1, amount);
+                    transferStmt.setString(2, fromAccountNumber);
+                    transferStmt.setBigDecimal(3, amount);
+                    transferStmt.setString(4, toAccountNumber);
+                    transferStmt.setString(5, fromAccountNumber);
+                    transferStmt.setBigDecimal(6, amount.negate());
+                    transferStmt.setString(7, description);
+                    transferStmt.setString(8, toAccountNumber);
+                    transferStmt.setBigDecimal(9, amount);
+                    transferStmt.setString(10, description);
+                    transferStmt.executeUpdate();
+                }
+
+                connection.commit();
+                rows = 2;
+                getAccountCache().invalidate(fromAccountNumber);
+                getAccountCache().invalidate(toAccountNumber);
+                logger.info("Transfer of {} completed successfully from account {} to account {}",
+                    amount, fromAccountNumber, toAccountNumber);
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection);
+                throw e;
             }
+        } catch (SQLException e) {
+            logger.error("Error processing transfer", e);
+            throw new RuntimeException("Transfer failed", e);
+        } finally {
+            TRANSFER.record(start, rows);
         }
     }
 
     /**
-     * Example of INNER JOIN between accounts and transactions tables
+     * Bind either a BigDecimal amount or, when it is null, Money minor units
+     */
+    private static void bindAmount(PreparedStatement stmt, int index, BigDecimal amount, long amountMinorUnits)
+            throws SQLException {
+        if (amount != null) {
+            stmt.setBigDecimal(index, amount);
+        } else {
+            Money.bind(stmt, index, amountMinorUnits);
+        }
+    }
+
+    private static boolean accountExists(Connection connection, String accountNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM accounts WHERE account_number = ?")) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Example of INNER JOIN between accounts and transactions tables, read from a replica when one is current enough
      * @return List of account-transaction pairs
      */
     public List<AccountTransactionPair> getAccountTransactions() {
-        String sql = "SELECT a.id as account_id, a.account_number, a.balance, a.owner_name, " +
-                    "t.id as transaction_id, t.amount, t.type, t.timestamp, t.description " +
-                    "FROM accounts a " +
-                    "INNER JOIN transactions t ON a.account_number = t.account_number " +
-                    "ORDER BY a.id, t.timestamp DESC";
+        return getAccountTransactions(ReadConsistency.EVENTUAL);
+    }
+
+    /**
+     * @param consistency Freshness the report needs
+     * @return List of account-transaction pairs
+     */
+    public List<AccountTransactionPair> getAccountTransactions(ReadConsistency consistency) {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            List<AccountTransactionPair> results = new ArrayList<>();
+            for (List<AccountTransactionPair> shardResults : queryEveryShard(ACCOUNT_TRANSACTIONS, consistency,
+                    FinancialDatabaseManager::readAccountTransactions)) {
+                results.addAll(shardResults);
+            }
+
+            rows = results.size();
+            return results;
+        } catch (SQLException e) {
+            logger.error("Error executing query", e);
+            throw new RuntimeException("Database query failed", e);
+        } finally {
+            ACCOUNT_TRANSACTIONS.record(start, rows);
+        }
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
+    private static List<AccountTransactionPair> readAccountTransactions(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(ACCOUNT_TRANSACTIONS_SQL);
              ResultSet rs = stmt.executeQuery()) {
 
             List<AccountTransactionPair> results = new ArrayList<>();
+            AccountTransactionReader reader = new AccountTransactionReader();
 
             while (rs.next()) {
-                AccountTransactionPair pair = new AccountTransactionPair(
-                    new Account(
-                        rs.getLong("account_id"),
-                        rs.getString("account_number"),
-                        rs.getBigDecimal("balance"),
-                        rs.getString("owner_name")
-                    ),
-                    new Transaction(
-                        rs.getLong("transaction_id"),
-                        rs.getString("account_number"),
-                        rs.getBigDecimal("amount"),
-                        Transaction.TransactionType.valueOf(rs.getString("type")),
-                        rs.getTimestamp("timestamp").toLocalDateTime(),
-                        rs.getString("description")
-                    )
-                );
-                results.add(pair);
+                results.add(reader.read(rs));
             }
-
             return results;
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #getAccountTransactions()} backed by a server-side cursor.
+     * Rows for the same account share one Account instance. With shards, each shard's rows
+     * follow the previous shard's.
+     * @param fetchSize Rows fetched per round trip
+     * @return Stream of account-transaction pairs; close it to release the connection
+     */
+    public Stream<AccountTransactionPair> streamAccountTransactions(int fetchSize) {
+        // Times opening the cursor; rows are pulled later at the caller's pace
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        Stream<AccountTransactionPair> stream = null;
+        try {
+            if (shards == null) {
+                stream = CursorStream.open(getReadConnection(STREAM_ACCOUNT_TRANSACTIONS, ReadConsistency.EVENTUAL),
+                    ACCOUNT_TRANSACTIONS_SQL, fetchSize, stmt -> { }, new AccountTransactionReader());
+            } else {
+                // One cursor per shard, all opened now and read one after another; one permit covers them all
+                stream = Stream.empty();
+                if (admission != null) {
+                    stream = stream.onClose(admission.acquire(Priority.REPORT)::close);
+                }
+                for (int shard = 0; shard < shards.getShardCount(); shard++) {
+                    Connection connection = shards.getShard(shard).getConnection();
+                    if (admission != null) {
+                        try {
+                            admission.applyStatementTimeout(connection, STREAM_ACCOUNT_TRANSACTIONS, Priority.REPORT);
+                        } catch (SQLException e) {
+                            connection.close();
+                            throw e;
+                        }
+                    }
+                    stream = Stream.concat(stream, CursorStream.open(connection,
+                        ACCOUNT_TRANSACTIONS_SQL, fetchSize, stmt -> { }, new AccountTransactionReader()));
+                }
+            }
+            rows = 0;
+            return stream;
         } catch (SQLException e) {
+            if (stream != null) {
+                stream.close();
+            }
             logger.error("Error executing query", e);
             throw new RuntimeException("Database query failed", e);
+        } finally {
+            STREAM_ACCOUNT_TRANSACTIONS.record(start, rows);
         }
     }
 
     /**
-     * Example of LEFT JOIN to get all accounts with their latest transaction
-     * @return Map of account number to latest transaction
+     * Callback variant of {@link #streamAccountTransactions(int)}
+     * @param fetchSize Rows fetched per round trip
+     * @param action Invoked once per row, in account order
+     */
+    public void forEachAccountTransaction(int fetchSize, Consumer<AccountTransactionPair> action) {
+        try (Stream<AccountTransactionPair> pairs = streamAccountTransactions(fetchSize)) {
+            pairs.forEachOrdered(action);
+        }
+    }
+
+    /**
+     * Example of LATERAL join to get every account that has transactions with its latest one.
+     * Ties on timestamp are broken by the highest transaction id. Read from a replica when one
+     * is current enough.
+     * @return Map of account number to latest transaction, ordered by account number
      */
     public Map<String, Transaction> getLatestTransactions() {
-        String sql = "SELECT a.account_number, " +
-                    "t.id as transaction_id, t.amount, t.type, t.timestamp, t.description " +
-                    "FROM accounts a " +
-                    "LEFT JOIN transactions t ON a.account_number = t.account_number " +
-                    "WHERE t.timestamp = (" +
-                    "    SELECT MAX(t2.timestamp) " +
-                    "    FROM transactions t2 " +
-                    "    WHERE t2.account_number = a.account_number) " +
-                    "ORDER BY a.account_number";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+        return getLatestTransactions(ReadConsistency.EVENTUAL);
+    }
 
-            Map<String, Transaction> results = new HashMap<>();
+    /**
+     * @param consistency Freshness the report needs
+     * @return Map of account number to latest transaction, ordered by account number
+     */
+    public Map<String, Transaction> getLatestTransactions(ReadConsistency consistency) {
+        String sql = LATEST_TRANSACTIONS_SELECT + "ORDER BY a.account_number";
 
-            while (rs.next()) {
-                String accountNumber = rs.getString("account_number");
-                Transaction transaction = new Transaction(
-                    rs.getLong("transaction_id"),
-                    accountNumber,
-                    rs.getBigDecimal("amount"),
-                    Transaction.TransactionType.valueOf(rs.getString("type")),
-                    rs.getTimestamp("timestamp").toLocalDateTime(),
-                    rs.getString("description")
-                );
-                results.put(accountNumber, transaction);
-            }
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            Map<String, Transaction> results = mergeByAccount(queryEveryShard(LATEST_TRANSACTIONS, consistency,
+                connection -> {
+                    try (PreparedStatement stmt = connection.prepareStatement(sql);
+                         ResultSet rs = stmt.executeQuery()) {
+                        return readLatestTransactions(rs);
+                    }
+                }));
+            rows = results.size();
+            return results;
+        } catch (SQLException e) {
+            logger.error("Error executing query", e);
+            throw new RuntimeException("Database query failed", e);
+        } finally {
+            LATEST_TRANSACTIONS.record(start, rows);
+        }
+    }
+
+    /**
+     * Latest transaction for each of the given accounts that has transactions
+     * @param accountNumbers Accounts to look up
+     * @return Map of account number to latest transaction, ordered by account number
+     */
+    public Map<String, Transaction> getLatestTransactions(Collection<String> accountNumbers) {
+        if (accountNumbers.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        String sql = LATEST_TRANSACTIONS_SELECT + "WHERE a.account_number = ANY (?) ORDER BY a.account_number";
 
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            // With shards every shard gets the whole list and answers for the accounts it owns
+            Map<String, Transaction> results = mergeByAccount(queryEveryShard(LATEST_TRANSACTIONS,
+                ReadConsistency.PRIMARY, connection -> {
+                    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                        stmt.setArray(1, connection.createArrayOf("varchar", accountNumbers.toArray()));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            return readLatestTransactions(rs);
+                        }
+                    }
+                }));
+            rows = results.size();
             return results;
         } catch (SQLException e) {
             logger.error("Error executing query", e);
             throw new RuntimeException("Database query failed", e);
+        } finally {
+            LATEST_TRANSACTIONS.record(start, rows);
+        }
+    }
+
+    private static Map<String, Transaction> mergeByAccount(List<Map<String, Transaction>> shardResults) {
+        if (shardResults.size() == 1) {
+            return shardResults.get(0);
+        }
+        Map<String, Transaction> sorted = new TreeMap<>();
+        for (Map<String, Transaction> results : shardResults) {
+            sorted.putAll(results);
         }
+        return new LinkedHashMap<>(sorted);
+    }
+
+    private static Map<String, Transaction> readLatestTransactions(ResultSet rs) throws SQLException {
+        Map<String, Transaction> results = new LinkedHashMap<>();
+        TransactionMapper mapper = new TransactionMapper("transaction_id");
+
+        while (rs.next()) {
+            Transaction transaction = mapper.read(rs);
+            results.put(transaction.getAccountNumber(), transaction);
+        }
+
+        return results;
     }
 
     /**
-     * Example of GROUP BY with aggregate functions
+     * Total transaction amount per account, read from the account_balances
+     * aggregate table instead of grouping the whole ledger. Read from a replica when one is
+     * current enough.
      * @return Map of account number to total transaction amount
      */
     public Map<String, BigDecimal> getAccountBalances() {
-        String sql = "SELECT t.account_number, SUM(t.amount) as total_amount " +
-                    "FROM transactions t " +
-                    "GROUP BY t.account_number";
+        return getAccountBalances(ReadConsistency.EVENTUAL);
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
+    /**
+     * @param consistency Freshness the report needs, e.g. READ_YOUR_WRITES right after a posting
+     * @return Map of account number to total transaction amount
+     */
+    public Map<String, BigDecimal> getAccountBalances(ReadConsistency consistency) {
+        String sql = "SELECT b.account_number, b.total_amount " +
+                    "FROM account_balance_totals b";
 
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
             Map<String, BigDecimal> results = new HashMap<>();
+            queryEveryShard(ACCOUNT_BALANCES, consistency, connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    Map<String, BigDecimal> shardResults = new HashMap<>();
+                    while (rs.next()) {
+                        String accountNumber = rs.getString("account_number");
+                        BigDecimal totalAmount = rs.getBigDecimal("total_amount");
+                        shardResults.put(accountNumber, totalAmount);
+                    }
+                    return shardResults;
+                }
+            }).forEach(results::putAll);
 
-            while (rs.next()) {
-                String accountNumber = rs.getString("account_number");
-                BigDecimal totalAmount = rs.getBigDecimal("total_amount");
-                results.put(accountNumber, totalAmount);
-            }
-
+            rows = results.size();
             return results;
         } catch (SQLException e) {
             logger.error("Error executing query", e);
             throw new RuntimeException("Database query failed", e);
+        } finally {
+            ACCOUNT_BALANCES.record(start, rows);
         }
     }
 
     @Override
     public void close() throws Exception {
-        if (connection != null) {
-            try {
-                connection.close();
-                logger.info("Database connection closed");
-            } catch (SQLException e) {
-                logger.error("Failed to close database connection", e);
-            }
+        if (ownsPool) {
+            pool.close();
         }
     }
 
+    /**
+     * Borrow a connection from the pool. Closing it returns it to the pool.
+     * @return Pooled connection
+     */
     protected Connection getConnection() throws SQLException {
-        if (connection == null || connection.isClosed()) {
-            try {
-                connection = DriverManager.getConnection(DB_URL, USER, PASS);
-                logger.info("Successfully connected to the database");
-            } catch (SQLException e) {
-                logger.error("Failed to connect to database", e);
-                throw new RuntimeException("Database connection failed", e);
-            }
+        return pool.getConnection();
+    }
+
+    /**
+     * Borrow a connection for a posting and record how long the pool made the caller wait
+     * @param operation Operation the connection is borrowed for
+     * @return Pooled connection
+     * @throws com.financial.db.admission.OverloadedException if admission control turns the call away
+     */
+    protected Connection getConnection(OperationMetrics operation) throws SQLException {
+        return getConnection(operation, Priority.POSTING);
+    }
+
+    /**
+     * Borrow a connection from the pool for work of the given priority
+     * @param operation Operation the connection is borrowed for
+     * @param priority Priority of the call under admission control
+     * @return Pooled connection
+     */
+    protected Connection getConnection(OperationMetrics operation, Priority priority) throws SQLException {
+        return borrow(operation, priority, pool::getConnection);
+    }
+
+    /**
+     * Borrow a connection for a report, from a replica when the router has one that qualifies
+     * @param operation Operation the connection is borrowed for
+     * @param consistency Freshness the read needs
+     * @return Pooled connection
+     */
+    protected Connection getReadConnection(OperationMetrics operation, ReadConsistency consistency) throws SQLException {
+        return getReadConnection(operation, consistency, Priority.REPORT);
+    }
+
+    /**
+     * Borrow a connection for read-only work, from a replica when the router has one that qualifies
+     * @param operation Operation the connection is borrowed for
+     * @param consistency Freshness the read needs
+     * @param priority Priority of the call under admission control
+     * @return Pooled connection
+     */
+    protected Connection getReadConnection(OperationMetrics operation, ReadConsistency consistency, Priority priority)
+            throws SQLException {
+        return borrow(operation, priority, () -> readRouter.getConnection(consistency));
+    }
+
+    /**
+     * Borrow a connection for a posting to the database holding the account
+     * @param operation Operation the connection is borrowed for
+     * @param accountNumber Account the work is about
+     * @return Pooled connection
+     */
+    protected Connection getConnection(OperationMetrics operation, String accountNumber) throws SQLException {
+        return getConnection(operation, accountNumber, Priority.POSTING);
+    }
+
+    /**
+     * Borrow a connection to the database holding the account: its shard, or the pool when unsharded
+     * @param operation Operation the connection is borrowed for
+     * @param accountNumber Account the work is about
+     * @param priority Priority of the call under admission control
+     * @return Pooled connection
+     */
+    protected Connection getConnection(OperationMetrics operation, String accountNumber, Priority priority)
+            throws SQLException {
+        if (shards == null) {
+            return borrow(operation, priority, pool::getConnection);
         }
+        return borrow(operation, priority, () -> shards.getConnection(accountNumber));
+    }
+
+    /**
+     * Admit the call, borrow its connection and record how long that took
+     */
+    private Connection borrow(OperationMetrics operation, Priority priority,
+                              AdmissionController.ConnectionSource source) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = admission != null ?
+            admission.getConnection(operation, priority, source) : source.get();
+        operation.recordAcquire(System.nanoTime() - start);
         return connection;
     }
-}
\ No newline at end of file
+
+    /**
+     * Run a query on every shard in parallel, or once through the read router when unsharded
+     * @param operation Operation the query belongs to
+     * @param consistency Freshness the read needs when unsharded; shards are always read on their primary
+     * @param query Query to run
+     * @return One result per shard
+     */
+    protected <T> List<T> queryEveryShard(OperationMetrics operation, ReadConsistency consistency,
+                                          ShardedDatabase.ShardQuery<T> query) throws SQLException {
+        return queryEveryShard(operation, consistency, Priority.REPORT, query);
+    }
+
+    /**
+     * Run a query on every shard in parallel, or once through the read router when unsharded
+     * @param operation Operation the query belongs to
+     * @param consistency Freshness the read needs when unsharded; shards are always read on their primary
+     * @param priority Priority of the call under admission control; one permit covers every shard
+     * @param query Query to run
+     * @return One result per shard
+     */
+    protected <T> List<T> queryEveryShard(OperationMetrics operation, ReadConsistency consistency, Priority priority,
+                                          ShardedDatabase.ShardQuery<T> query) throws SQLException {
+        if (shards != null) {
+            if (admission == null) {
+                return shards.scatter(query);
+            }
+            try (AdmissionController.Permit permit = admission.acquire(priority)) {
+                return shards.scatter(connection -> {
+                    admission.applyStatementTimeout(connection, operation, priority);
+                    return query.run(connection);
+                });
+            }
+        }
+        try (Connection connection = getReadConnection(operation, consistency, priority)) {
+            return Collections.singletonList(query.run(connection));
+        }
+    }
+
+    /**
+     * @return Admission control in front of this manager's connections, or null when disabled
+     */
+    protected AdmissionController getAdmission() {
+        return admission;
+    }
+
+    /**
+     * @return Shards accounts are spread over, or null when unsharded
+     */
+    protected ShardedDatabase getShards() {
+        return shards;
+    }
+
+    protected ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Accounts whose postings go to balance slots; may lag the database, which every path tolerates
+     */
+    protected HotAccountSet getHotAccounts() {
+        return HotAccountSet.getDefault();
+    }
+
+    /**
+     * Cache in front of account lookups; writers invalidate it after commit
+     */
+    protected AccountCache getAccountCache() {
+        return AccountCache.getDefault();
+    }
+
+    /**
+     * Maps joined account/transaction rows, reusing the Account while
+     * consecutive rows belong to the same account.
+     */
+    private static final class AccountTransactionReader implements CursorStream.RowReader<AccountTransactionPair> {
+        private final AccountMapper accounts = AccountMapper.forJoin("account_id");
+        private final TransactionMapper transactions = new TransactionMapper("transaction_id");
+        private Account current;
+
+        @Override
+        public AccountTransactionPair read(ResultSet rs) throws SQLException {
+            long accountId = accounts.readId(rs);
+            if (current == null || current.getId() != accountId) {
+                current = accounts.read(rs);
+            }
+            return new AccountTransactionPair(current, transactions.read(rs));
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            logger.error("Error rolling back transaction", ex);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.financial.db.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit that follows the latency the database delivers, in the
+ * style of TCP Vegas and Netflix's gradient limiter.
+ *
+ * Call latencies are averaged over short windows and compared with a
+ * slowly moving baseline. While a window is no slower than the baseline
+ * times {@value #TOLERANCE}, the limit grows by about its square root per
+ * window; when latency rises above that the limit shrinks in proportion, down
+ * to half per window. Windows in which callers used less than half the limit
+ * say nothing about how much more the database could take and are skipped.
+ * The baseline decays when the database has been slow for long enough, so a
+ * lasting change in workload becomes the new normal instead of pinning the
+ * limit at its minimum.
+ */
+final class AdaptiveLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    // Windows over which the baseline moves; about a minute at the shortest window length
+    private static final int BASELINE_WINDOWS = 600;
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private volatile double limit;
+
+    // Guarded by this
+    private long windowStart = System.nanoTime();
+    private long windowLatencySum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private double baseline;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid limits: initial=" + initialLimit + ", min=" + minLimit +
+                ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    double get() {
+        return limit;
+    }
+
+    /**
+     * @param latencyNanos How long the call held its permit
+     * @param inFlight Calls in flight when it was admitted, itself included
+     */
+    synchronized void onSample(long latencyNanos, int inFlight) {
+        windowLatencySum += latencyNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        long now = System.nanoTime();
+        if (windowSamples < MIN_WINDOW_SAMPLES || now - windowStart < MIN_WINDOW_NANOS) {
+            return;
+        }
+
+        double current = (double) windowLatencySum / windowSamples;
+        boolean appLimited = windowMaxInFlight < limit / 2;
+        windowStart = now;
+        windowLatencySum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        baseline = baseline == 0 ? current : baseline + (current - baseline) / BASELINE_WINDOWS;
+        if (baseline > current * 2) {
+            // Latency fell well below the baseline, e.g. after a checkpoint; catch up faster than the average would
+            baseline *= 0.95;
+        }
+        if (appLimited) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / current));
+        double target = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+}
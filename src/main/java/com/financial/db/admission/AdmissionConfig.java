@@ -0,0 +1,141 @@
+package com.financial.db.admission;
+
+import com.financial.db.util.Env;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control settings. {@link #fromEnv()} reads the DB_ADMISSION_*
+ * and DB_STATEMENT_TIMEOUT* variables.
+ */
+public class AdmissionConfig {
+    private int initialLimit = 20;
+    private int minLimit = 4;
+    private int maxLimit = 200;
+    private final Map<Priority, Integer> sharePercent = new EnumMap<>(Priority.class);
+    private final Map<Priority, Long> statementTimeoutMillis = new EnumMap<>(Priority.class);
+    private final Map<String, Long> operationTimeoutMillis = new HashMap<>();
+
+    public AdmissionConfig() {
+        sharePercent.put(Priority.POSTING, 100);
+        sharePercent.put(Priority.READ, 90);
+        sharePercent.put(Priority.REPORT, 50);
+        sharePercent.put(Priority.BULK, 50);
+        statementTimeoutMillis.put(Priority.POSTING, 2_000L);
+        statementTimeoutMillis.put(Priority.READ, 5_000L);
+        statementTimeoutMillis.put(Priority.REPORT, 60_000L);
+        statementTimeoutMillis.put(Priority.BULK, 0L);
+    }
+
+    /**
+     * Build a configuration from environment variables
+     * @return Admission configuration
+     */
+    public static AdmissionConfig fromEnv() {
+        AdmissionConfig config = new AdmissionConfig();
+        config.setInitialLimit(Env.getInt("DB_ADMISSION_INITIAL_LIMIT", config.getInitialLimit()));
+        config.setMinLimit(Env.getInt("DB_ADMISSION_MIN_LIMIT", config.getMinLimit()));
+        config.setMaxLimit(Env.getInt("DB_ADMISSION_MAX_LIMIT", config.getMaxLimit()));
+        config.setSharePercent(Priority.READ,
+            Env.getInt("DB_ADMISSION_READ_SHARE_PCT", config.getSharePercent(Priority.READ)));
+        config.setSharePercent(Priority.REPORT,
+            Env.getInt("DB_ADMISSION_REPORT_SHARE_PCT", config.getSharePercent(Priority.REPORT)));
+        config.setSharePercent(Priority.BULK,
+            Env.getInt("DB_ADMISSION_BULK_SHARE_PCT", config.getSharePercent(Priority.BULK)));
+        for (Priority priority : Priority.values()) {
+            config.setStatementTimeoutMillis(priority, Env.getLong("DB_STATEMENT_TIMEOUT_" + priority + "_MS",
+                config.getStatementTimeoutMillis(priority)));
+        }
+        String overrides = Env.getString("DB_STATEMENT_TIMEOUTS", "");
+        for (String entry : overrides.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=");
+            try {
+                config.setOperationTimeoutMillis(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid DB_STATEMENT_TIMEOUTS entry, expected operation=millis: " +
+                    entry, e);
+            }
+        }
+        return config;
+    }
+
+    void validate() {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid admission limits: initial=" + initialLimit +
+                ", min=" + minLimit + ", max=" + maxLimit);
+        }
+        for (int share : sharePercent.values()) {
+            if (share < 1 || share > 100) {
+                throw new IllegalArgumentException("Admission shares must be between 1 and 100: " + sharePercent);
+            }
+        }
+    }
+
+    // Getters and Setters
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * @return Percentage of the limit that calls of this priority may fill
+     */
+    public int getSharePercent(Priority priority) {
+        return sharePercent.get(priority);
+    }
+
+    public void setSharePercent(Priority priority, int percent) {
+        sharePercent.put(priority, percent);
+    }
+
+    /**
+     * @return Statement timeout for calls of this priority, 0 for none
+     */
+    public long getStatementTimeoutMillis(Priority priority) {
+        return statementTimeoutMillis.get(priority);
+    }
+
+    public void setStatementTimeoutMillis(Priority priority, long millis) {
+        statementTimeoutMillis.put(priority, millis);
+    }
+
+    /**
+     * @return Timeouts that replace the priority's for single operations, by operation name
+     */
+    public Map<String, Long> getOperationTimeoutMillis() {
+        return Collections.unmodifiableMap(operationTimeoutMillis);
+    }
+
+    /**
+     * @param operation Operation name, e.g. {@code FinancialDatabaseManager.getAccountBalances}
+     * @param millis Statement timeout, 0 for none
+     */
+    public void setOperationTimeoutMillis(String operation, long millis) {
+        operationTimeoutMillis.put(operation, millis);
+    }
+}
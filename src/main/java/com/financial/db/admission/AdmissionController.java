@@ -0,0 +1,236 @@
+package com.financial.db.admission;
+
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the database.
+ *
+ * Every call takes a permit before it borrows a connection and returns it
+ * when the connection is closed. The number of permits out at once is
+ * bounded by an {@link AdaptiveLimit} fed with how long each posting and
+ * read held its permit, so the limit shrinks when the database slows down,
+ * e.g. during a checkpoint or a vacuum, and grows back when it recovers. Each
+ * {@link Priority} may fill only its share of the limit, so reports are
+ * turned away before reads and reads before postings. A call over its
+ * share fails straight away with {@link OverloadedException} instead of
+ * queueing for a connection, which keeps the latency of admitted calls
+ * bounded.
+ *
+ * Admitted connections also get a statement timeout by priority, or by
+ * operation where one is configured.
+ */
+public class AdmissionController {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    /**
+     * Source of the connection an admitted call works on
+     */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    private static AdmissionController defaultController;
+    private static boolean defaultResolved;
+
+    private final AdmissionConfig config;
+    private final Map<String, Long> operationTimeouts;
+    private final AdaptiveLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, LongAdder> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, LongAdder> rejected = new EnumMap<>(Priority.class);
+
+    public AdmissionController(AdmissionConfig config) {
+        config.validate();
+        this.config = config;
+        this.operationTimeouts = Map.copyOf(config.getOperationTimeoutMillis());
+        this.limit = new AdaptiveLimit(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit());
+        for (Priority priority : Priority.values()) {
+            admitted.put(priority, new LongAdder());
+            rejected.put(priority, new LongAdder());
+        }
+    }
+
+    /**
+     * Process-wide controller used by every manager. Disabled by
+     * DB_ADMISSION_ENABLED=false; otherwise configured by
+     * {@link AdmissionConfig#fromEnv()}.
+     * @return Shared controller, or null if disabled
+     */
+    public static synchronized AdmissionController getDefault() {
+        if (!defaultResolved) {
+            if (Boolean.parseBoolean(Env.getString("DB_ADMISSION_ENABLED", "true"))) {
+                defaultController = new AdmissionController(AdmissionConfig.fromEnv());
+            }
+            defaultResolved = true;
+        }
+        return defaultController;
+    }
+
+    /**
+     * Take a permit without borrowing a connection, e.g. for work spread over several connections
+     * @param priority Priority of the call
+     * @return Permit; close it when the call is done
+     * @throws OverloadedException if the priority's share of the limit is in use
+     */
+    public Permit acquire(Priority priority) throws OverloadedException {
+        int allowed = allowed(priority);
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejected.get(priority).increment();
+                logger.debug("Rejected {} call with {} in flight, limit {}", priority, current, allowed);
+                throw new OverloadedException(priority, current, allowed);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.get(priority).increment();
+                return new Permit(priority, current + 1);
+            }
+        }
+    }
+
+    /**
+     * Admit a call and borrow its connection, with the statement timeout for
+     * the operation already set. Closing the connection returns the permit.
+     * @param operation Operation the connection is for
+     * @param priority Priority of the call
+     * @param source Where to borrow the connection from
+     * @return Connection that returns the permit when closed
+     * @throws OverloadedException if the priority's share of the limit is in use
+     */
+    public Connection getConnection(OperationMetrics operation, Priority priority, ConnectionSource source)
+            throws SQLException {
+        Permit permit = acquire(priority);
+        Connection connection = null;
+        try {
+            connection = source.get();
+            applyStatementTimeout(connection, operation, priority);
+            return admitted(connection, permit);
+        } catch (SQLException | RuntimeException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Set the statement timeout configured for an operation on a connection
+     * it borrowed some other way
+     */
+    public void applyStatementTimeout(Connection connection, OperationMetrics operation, Priority priority)
+            throws SQLException {
+        Long millis = operationTimeouts.get(operation.getName());
+        ConnectionPool.setStatementTimeout(connection,
+            millis != null ? millis : config.getStatementTimeoutMillis(priority));
+    }
+
+    /**
+     * Give a connection borrowed straight from a pool, without a permit, the
+     * default statement timeout of a priority. Pooled connections keep their
+     * timeout across borrows, so it would otherwise run under whatever the
+     * previous borrower set. Nothing sets timeouts while admission control is
+     * disabled, so the connection is then left as it is.
+     * @param connection Connection to set the timeout on; closed if setting it fails
+     * @param priority Priority whose timeout applies
+     * @return The same connection
+     */
+    public static Connection withStatementTimeout(Connection connection, Priority priority) throws SQLException {
+        AdmissionController admission = getDefault();
+        if (admission != null) {
+            try {
+                ConnectionPool.setStatementTimeout(connection, admission.config.getStatementTimeoutMillis(priority));
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * @return Current concurrency limit
+     */
+    public int getLimit() {
+        return (int) limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAdmittedCount(Priority priority) {
+        return admitted.get(priority).sum();
+    }
+
+    public long getRejectedCount(Priority priority) {
+        return rejected.get(priority).sum();
+    }
+
+    private int allowed(Priority priority) {
+        return Math.max(1, (int) (limit.get() * config.getSharePercent(priority) / 100));
+    }
+
+    private static Connection admitted(Connection connection, Permit permit) {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("close")) {
+                    try {
+                        connection.close();
+                    } finally {
+                        permit.close();
+                    }
+                    return null;
+                }
+                try {
+                    return method.invoke(connection, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    /**
+     * One admitted call. Closing it more than once has no further effect.
+     */
+    public final class Permit implements AutoCloseable {
+        private final long start = System.nanoTime();
+        private final Priority priority;
+        private final int inFlightAtStart;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(Priority priority, int inFlightAtStart) {
+            this.priority = priority;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                // Reports and bulk work may hold a connection while the caller consumes a stream or feeds a COPY,
+                // which says little about the database
+                if (priority == Priority.POSTING || priority == Priority.READ) {
+                    limit.onSample(System.nanoTime() - start, inFlightAtStart);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.financial.db.admission;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown instead of queueing when the database already has as much work in
+ * flight as the admission limit allows for the call's priority. Nothing has
+ * been sent to the database; the call can be retried after a backoff.
+ */
+public class OverloadedException extends SQLTransientException {
+    private static final long serialVersionUID = 1L;
+
+    // PostgreSQL's insufficient_resources class
+    private static final String SQL_STATE = "53000";
+
+    private final Priority priority;
+    private final int limit;
+
+    public OverloadedException(Priority priority, int inFlight, int limit) {
+        super("Database overloaded: " + inFlight + " calls in flight, limit for " + priority + " is " + limit,
+            SQL_STATE);
+        this.priority = priority;
+        this.limit = limit;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return In-flight calls the priority was allowed when it was rejected
+     */
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,25 @@
+package com.financial.db.admission;
+
+/**
+ * How important a database call is when the database is overloaded. Lower
+ * priorities are admitted only while in-flight work is below a share of the
+ * limit, so they are shed first.
+ */
+public enum Priority {
+    /**
+     * Deposits, withdrawals, transfers and other writes
+     */
+    POSTING,
+    /**
+     * Point reads such as account and transaction lookups
+     */
+    READ,
+    /**
+     * Reports, scans over every shard and background work
+     */
+    REPORT,
+    /**
+     * Bulk loads and exports, aggregate checks and rebuilds, partition maintenance
+     */
+    BULK
+}
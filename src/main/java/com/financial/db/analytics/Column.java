@@ -0,0 +1,79 @@
+package com.financial.db.analytics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Append-only column of fixed-width values in a heap or direct byte buffer.
+ *
+ * Growing copies into a new, larger buffer and leaves the old one alone, so
+ * a reader holding an earlier buffer keeps seeing the rows it was given
+ * while the writer appends past them.
+ */
+final class Column {
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private final int width;
+    private final boolean offHeap;
+    private ByteBuffer buffer;
+    private int size;
+
+    Column(int width, boolean offHeap) {
+        this.width = width;
+        this.offHeap = offHeap;
+        this.buffer = allocate(INITIAL_CAPACITY);
+    }
+
+    void appendLong(long value) {
+        ensureCapacity();
+        buffer.putLong(size++ * Long.BYTES, value);
+    }
+
+    void appendInt(int value) {
+        ensureCapacity();
+        buffer.putInt(size++ * Integer.BYTES, value);
+    }
+
+    void appendByte(byte value) {
+        ensureCapacity();
+        buffer.put(size++, value);
+    }
+
+    /**
+     * @return Buffer holding the first {@link #size()} values; read it with absolute gets only
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return Bytes reserved for the column
+     */
+    long capacityBytes() {
+        return buffer.capacity();
+    }
+
+    private void ensureCapacity() {
+        int capacity = buffer.capacity() / width;
+        if (size < capacity) {
+            return;
+        }
+        if (capacity > Integer.MAX_VALUE / 2 / width) {
+            throw new IllegalStateException("Column is full at " + size + " rows");
+        }
+        ByteBuffer grown = allocate(capacity * 2);
+        ByteBuffer filled = buffer.duplicate();
+        filled.position(0).limit(size * width);
+        grown.put(filled);
+        buffer = grown;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        ByteBuffer allocated = offHeap ? ByteBuffer.allocateDirect(capacity * width) : ByteBuffer.allocate(capacity * width);
+        return allocated.order(ByteOrder.nativeOrder());
+    }
+}
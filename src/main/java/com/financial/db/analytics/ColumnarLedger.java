@@ -0,0 +1,259 @@
+package com.financial.db.analytics;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.mapping.EnumLookup;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction.TransactionType;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.ReadConsistency;
+import com.financial.db.pool.ReadRouter;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory, column-oriented copy of the transactions table for analytics.
+ *
+ * Each transaction takes 21 bytes: its amount in {@link Money} minor units
+ * and its timestamp in microseconds as longs, its account as an int code
+ * into a dictionary of account numbers and its type as a byte. Columns live
+ * on the heap or, optionally, in direct buffers outside it. Descriptions are
+ * not kept.
+ *
+ * {@link #refresh()} tails the table by id, reading only rows past the
+ * highest id seen so far. Ids are handed out before commit, so a lower id
+ * can become visible after a higher one; refresh remembers such gaps and
+ * re-reads them until they fill or the grace period passes, after which the
+ * ids are taken to belong to rolled-back inserts. Rows committed later than
+ * that, and rows removed by partition retention, are not reflected.
+ *
+ * Queries run against a {@link LedgerSnapshot} and never touch the
+ * database. The ledger reads from a replica when the read router has one.
+ */
+public class ColumnarLedger extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarLedger.class);
+
+    private static final OperationMetrics REFRESH = DbMetrics.operation("ColumnarLedger.refresh");
+
+    private static final String TAIL_SQL =
+        "SELECT id, account_number, type, (EXTRACT(EPOCH FROM timestamp) * 1000000)::bigint, " +
+        Money.minorUnits("amount") + " FROM transactions WHERE id > ? ORDER BY id";
+
+    private static final int FETCH_SIZE = 10_000;
+    private static final EnumLookup<TransactionType> TYPES = EnumLookup.of(TransactionType.class);
+
+    private final long gapGraceNanos;
+    private final Column accountCodes;
+    private final Column typeCodes;
+    private final Column timestamps;
+    private final Column amounts;
+    private final ConcurrentMap<String, Integer> dictionary = new ConcurrentHashMap<>();
+    private String[] accountNumbers = new String[1024];
+    private int accountCount;
+    private long minMicros = Long.MAX_VALUE;
+    private long maxMicros = Long.MIN_VALUE;
+
+    // Highest id loaded, and the ranges of lower ids not seen yet with when each was first noticed
+    private long highestId;
+    private final TreeMap<Long, long[]> gaps = new TreeMap<>();
+
+    private volatile LedgerSnapshot snapshot;
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Read through the default pool and read router. Configured from
+     * LEDGER_SNAPSHOT_OFF_HEAP ({@code true} to keep columns outside the
+     * heap; default {@code false}) and LEDGER_SNAPSHOT_GAP_GRACE_MS
+     * (default 10000).
+     */
+    public ColumnarLedger() {
+        this(ConnectionPool.getDefault(), ReadRouter.getDefault(),
+             Boolean.parseBoolean(Env.getString("LEDGER_SNAPSHOT_OFF_HEAP", "false")),
+             Env.getLong("LEDGER_SNAPSHOT_GAP_GRACE_MS", 10_000));
+    }
+
+    /**
+     * @param pool Pool to borrow connections from
+     * @param readRouter Router for the refresh reads
+     * @param offHeap Keep the columns in direct buffers
+     * @param gapGraceMillis How long an id gap may stay open before it is taken to be a rolled-back insert
+     */
+    public ColumnarLedger(ConnectionPool pool, ReadRouter readRouter, boolean offHeap, long gapGraceMillis) {
+        super(pool, readRouter);
+        if (gapGraceMillis < 0) {
+            throw new IllegalArgumentException("Gap grace period must not be negative: " + gapGraceMillis);
+        }
+        this.gapGraceNanos = TimeUnit.MILLISECONDS.toNanos(gapGraceMillis);
+        this.accountCodes = new Column(Integer.BYTES, offHeap);
+        this.typeCodes = new Column(Byte.BYTES, offHeap);
+        this.timestamps = new Column(Long.BYTES, offHeap);
+        this.amounts = new Column(Long.BYTES, offHeap);
+        publish();
+    }
+
+    /**
+     * @return Latest loaded state; cheap to call for every query
+     */
+    public LedgerSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Load the rows committed since the last refresh, or everything on the first call
+     * @return Number of rows added
+     */
+    public synchronized int refresh() throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getReadConnection(REFRESH, ReadConsistency.EVENTUAL, Priority.BULK)) {
+            connection.setAutoCommit(false);
+            int added = 0;
+            try (PreparedStatement stmt = connection.prepareStatement(TAIL_SQL)) {
+                stmt.setFetchSize(FETCH_SIZE);
+                stmt.setLong(1, gaps.isEmpty() ? highestId : gaps.firstKey() - 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    long now = System.nanoTime();
+                    while (rs.next()) {
+                        if (claim(rs.getLong(1), now)) {
+                            append(rs.getString(2), TYPES.lookup(rs.getString(3)), rs.getLong(4), rs.getLong(5));
+                            added++;
+                        }
+                    }
+                }
+            }
+            expireGaps();
+            publish();
+            rows = added;
+            return added;
+        } catch (SQLException e) {
+            logger.error("Failed to refresh the ledger snapshot", e);
+            throw e;
+        } finally {
+            REFRESH.record(start, rows);
+        }
+    }
+
+    /**
+     * Refresh in the background
+     * @param intervalMillis Time between refreshes
+     */
+    public synchronized void start(long intervalMillis) {
+        if (refresher != null) {
+            throw new IllegalStateException("Ledger refresh already started");
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ledger-snapshot-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Ledger snapshot refresh failed", e);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Bytes reserved by the columns, excluding the account dictionary
+     */
+    public synchronized long getColumnBytes() {
+        return accountCodes.capacityBytes() + typeCodes.capacityBytes() +
+               timestamps.capacityBytes() + amounts.capacityBytes();
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (this) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * Decide whether a row read from the table is new, updating the gaps
+     * @return False if the row was loaded by an earlier refresh
+     */
+    private boolean claim(long id, long now) {
+        if (id > highestId) {
+            if (id > highestId + 1) {
+                gaps.put(highestId + 1, new long[] { id - 1, now });
+            }
+            highestId = id;
+            return true;
+        }
+        Map.Entry<Long, long[]> gap = gaps.floorEntry(id);
+        if (gap == null || id > gap.getValue()[0]) {
+            return false;
+        }
+        long first = gap.getKey();
+        long last = gap.getValue()[0];
+        long noticed = gap.getValue()[1];
+        gaps.remove(first);
+        if (first < id) {
+            gaps.put(first, new long[] { id - 1, noticed });
+        }
+        if (id < last) {
+            gaps.put(id + 1, new long[] { last, noticed });
+        }
+        return true;
+    }
+
+    private void expireGaps() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Long, long[]>> it = gaps.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, long[]> gap = it.next();
+            if (now - gap.getValue()[1] >= gapGraceNanos) {
+                logger.debug("Giving up on transaction ids {} to {}", gap.getKey(), gap.getValue()[0]);
+                it.remove();
+            }
+        }
+    }
+
+    private void append(String accountNumber, TransactionType type, long timestampMicros, long amountMinorUnits) {
+        Integer code = dictionary.get(accountNumber);
+        if (code == null) {
+            if (accountCount == accountNumbers.length) {
+                // Published snapshots keep the old array
+                accountNumbers = Arrays.copyOf(accountNumbers, accountCount * 2);
+            }
+            accountNumbers[accountCount] = accountNumber;
+            code = accountCount++;
+            dictionary.put(accountNumber, code);
+        }
+        accountCodes.appendInt(code);
+        typeCodes.appendByte((byte) type.ordinal());
+        timestamps.appendLong(timestampMicros);
+        amounts.appendLong(amountMinorUnits);
+        minMicros = Math.min(minMicros, timestampMicros);
+        maxMicros = Math.max(maxMicros, timestampMicros);
+    }
+
+    private void publish() {
+        long watermark = gaps.isEmpty() ? highestId : gaps.firstKey() - 1;
+        snapshot = new LedgerSnapshot(watermark, amounts.size(), accountCodes.buffer(), typeCodes.buffer(),
+            timestamps.buffer(), amounts.buffer(), accountNumbers, accountCount, dictionary, minMicros, maxMicros);
+    }
+}
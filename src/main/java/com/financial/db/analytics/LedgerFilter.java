@@ -0,0 +1,100 @@
+package com.financial.db.analytics;
+
+import com.financial.db.model.Transaction.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable row filter for {@link LedgerSnapshot} queries. Conditions are
+ * combined with AND; an unset condition matches every row.
+ */
+public final class LedgerFilter {
+    private static final LedgerFilter ALL = new LedgerFilter(null, null, null, null);
+
+    private final Set<String> accounts;
+    private final Set<TransactionType> types;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    private LedgerFilter(Set<String> accounts, Set<TransactionType> types, LocalDateTime from, LocalDateTime to) {
+        this.accounts = accounts;
+        this.types = types;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return Filter that matches every row
+     */
+    public static LedgerFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param accountNumbers Accounts to keep
+     * @return Copy of this filter that also requires one of the accounts
+     */
+    public LedgerFilter accounts(String... accountNumbers) {
+        Set<String> set = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(accountNumbers)));
+        return new LedgerFilter(set, types, from, to);
+    }
+
+    /**
+     * @param first Type to keep
+     * @param rest More types to keep
+     * @return Copy of this filter that also requires one of the types
+     */
+    public LedgerFilter types(TransactionType first, TransactionType... rest) {
+        return new LedgerFilter(accounts, Collections.unmodifiableSet(EnumSet.of(first, rest)), from, to);
+    }
+
+    /**
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @return Copy of this filter that also requires the timestamp to be in the range
+     */
+    public LedgerFilter between(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Empty time range: " + from + " to " + to);
+        }
+        return new LedgerFilter(accounts, types, from, to);
+    }
+
+    /**
+     * @return Accounts to keep, or null for all
+     */
+    public Set<String> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * @return Types to keep, or null for all
+     */
+    public Set<TransactionType> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return Earliest timestamp, or null for no lower bound
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * @return Latest timestamp, exclusive, or null for no upper bound
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerFilter{accounts=" + accounts + ", types=" + types + ", from=" + from + ", to=" + to + '}';
+    }
+}
@@ -0,0 +1,330 @@
+package com.financial.db.analytics;
+
+import com.financial.db.model.AccountActivity;
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction.TransactionType;
+import com.financial.db.util.EpochMicros;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Point-in-time, read-only view of a {@link ColumnarLedger}.
+ *
+ * Every query is a scan over the columns split across the common fork-join
+ * pool. Each task filters its range of rows and adds them up into arrays
+ * indexed by group, which are then merged pairwise. Several queries against
+ * the same snapshot see the same rows, however far the ledger has been
+ * refreshed in the meantime.
+ */
+public final class LedgerSnapshot {
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    // Rows below which a scan is not split further
+    private static final int MIN_LEAF_ROWS = 1 << 16;
+    private static final int MAX_TIME_BUCKETS = 1 << 20;
+
+    private enum Grouping { TOTAL, ACCOUNT, TYPE, TIME_BUCKET }
+
+    private final long watermark;
+    private final int rows;
+    private final ByteBuffer accountCodes;
+    private final ByteBuffer typeCodes;
+    private final ByteBuffer timestamps;
+    private final ByteBuffer amounts;
+    private final String[] accountNumbers;
+    private final int accountCount;
+    private final ConcurrentMap<String, Integer> dictionary;
+    private final long minMicros;
+    private final long maxMicros;
+
+    LedgerSnapshot(long watermark, int rows, ByteBuffer accountCodes, ByteBuffer typeCodes, ByteBuffer timestamps,
+                   ByteBuffer amounts, String[] accountNumbers, int accountCount,
+                   ConcurrentMap<String, Integer> dictionary, long minMicros, long maxMicros) {
+        this.watermark = watermark;
+        this.rows = rows;
+        this.accountCodes = accountCodes;
+        this.typeCodes = typeCodes;
+        this.timestamps = timestamps;
+        this.amounts = amounts;
+        this.accountNumbers = accountNumbers;
+        this.accountCount = accountCount;
+        this.dictionary = dictionary;
+        this.minMicros = minMicros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * @return Highest transaction id below which every row is in the snapshot
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    /**
+     * @param filter Rows to include
+     * @return Totals over the matching rows
+     */
+    public LedgerTotals total(LedgerFilter filter) {
+        Groups groups = scan(new Query(filter, Grouping.TOTAL, 1, 0, 1));
+        return groups.totals(0);
+    }
+
+    /**
+     * @param filter Rows to include
+     * @return Totals per account with matching rows, by account number
+     */
+    public SortedMap<String, LedgerTotals> totalsByAccount(LedgerFilter filter) {
+        Groups groups = scan(new Query(filter, Grouping.ACCOUNT, accountCount, 0, 1));
+        SortedMap<String, LedgerTotals> results = new TreeMap<>();
+        for (int account = 0; account < accountCount; account++) {
+            if (groups.counts[account] > 0) {
+                results.put(accountNumbers[account], groups.totals(account));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param filter Rows to include
+     * @return Totals per transaction type with matching rows
+     */
+    public Map<TransactionType, LedgerTotals> totalsByType(LedgerFilter filter) {
+        Groups groups = scan(new Query(filter, Grouping.TYPE, TYPES.length, 0, 1));
+        Map<TransactionType, LedgerTotals> results = new EnumMap<>(TransactionType.class);
+        for (TransactionType type : TYPES) {
+            if (groups.counts[type.ordinal()] > 0) {
+                results.put(type, groups.totals(type.ordinal()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Totals per fixed-width time bucket. Buckets are aligned to multiples of
+     * the width since the epoch, so a one-day width yields calendar days.
+     * @param width Bucket width, a whole number of microseconds
+     * @param filter Rows to include; its time range, if any, bounds the buckets
+     * @return Totals per bucket with matching rows, by bucket start
+     */
+    public NavigableMap<LocalDateTime, LedgerTotals> totalsByTimeBucket(Duration width, LedgerFilter filter) {
+        long widthMicros = width.toNanos() / 1_000;
+        if (widthMicros <= 0 || widthMicros * 1_000 != width.toNanos()) {
+            throw new IllegalArgumentException("Bucket width must be a positive number of microseconds: " + width);
+        }
+        NavigableMap<LocalDateTime, LedgerTotals> results = new TreeMap<>();
+        if (rows == 0) {
+            return results;
+        }
+        long from = filter.getFrom() != null ? EpochMicros.toMicros(filter.getFrom()) : minMicros;
+        long to = filter.getTo() != null ? EpochMicros.toMicros(filter.getTo()) : maxMicros + 1;
+        if (from >= to) {
+            return results;
+        }
+        long origin = Math.floorDiv(from, widthMicros) * widthMicros;
+        long buckets = (to - origin + widthMicros - 1) / widthMicros;
+        if (buckets > MAX_TIME_BUCKETS) {
+            throw new IllegalArgumentException("Too many time buckets: " + buckets);
+        }
+
+        Groups groups = scan(new Query(filter, Grouping.TIME_BUCKET, (int) buckets, origin, widthMicros));
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            if (groups.counts[bucket] > 0) {
+                results.put(EpochMicros.fromMicros(origin + bucket * widthMicros), groups.totals(bucket));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * In-memory counterpart of {@code AccountBalanceDAO.getAccountActivity()}
+     * @return Activity per account with transactions, by account number
+     */
+    public List<AccountActivity> getAccountActivity() {
+        List<AccountActivity> results = new ArrayList<>();
+        for (Map.Entry<String, LedgerTotals> entry : totalsByAccount(LedgerFilter.all()).entrySet()) {
+            LedgerTotals totals = entry.getValue();
+            results.add(new AccountActivity(entry.getKey(), totals.getAmount(), totals.count(), totals.lastActivity()));
+        }
+        return results;
+    }
+
+    /**
+     * In-memory counterpart of {@code FinancialDatabaseManager.getAccountBalances()}
+     * @return Sum of transaction amounts per account with transactions
+     */
+    public Map<String, BigDecimal> getAccountBalances() {
+        Map<String, BigDecimal> results = new HashMap<>();
+        for (Map.Entry<String, LedgerTotals> entry : totalsByAccount(LedgerFilter.all()).entrySet()) {
+            results.put(entry.getKey(), entry.getValue().getAmount());
+        }
+        return results;
+    }
+
+    private Groups scan(Query query) {
+        if (rows == 0) {
+            return new Groups(query.groups);
+        }
+        return ForkJoinPool.commonPool().invoke(new Scan(query, 0, rows));
+    }
+
+    /**
+     * A filter resolved against this snapshot's dictionary, plus how to group
+     */
+    private final class Query {
+        final Grouping grouping;
+        final int groups;
+        final long origin;
+        final long width;
+        final long fromMicros;
+        final long toMicros;
+        final int typeMask;
+        final boolean[] accountMask;
+        final int leafRows;
+
+        Query(LedgerFilter filter, Grouping grouping, int groups, long origin, long width) {
+            this.grouping = grouping;
+            this.groups = groups;
+            this.origin = origin;
+            this.width = width;
+            this.fromMicros = filter.getFrom() != null ? EpochMicros.toMicros(filter.getFrom()) : Long.MIN_VALUE;
+            this.toMicros = filter.getTo() != null ? EpochMicros.toMicros(filter.getTo()) : Long.MAX_VALUE;
+
+            int types = 0;
+            for (TransactionType type : filter.getTypes() != null ? filter.getTypes() : List.of(TYPES)) {
+                types |= 1 << type.ordinal();
+            }
+            this.typeMask = types;
+
+            if (filter.getAccounts() != null) {
+                accountMask = new boolean[accountCount];
+                for (String accountNumber : filter.getAccounts()) {
+                    Integer code = dictionary.get(accountNumber);
+                    // Accounts first seen after this snapshot was taken have no rows in it
+                    if (code != null && code < accountCount) {
+                        accountMask[code] = true;
+                    }
+                }
+            } else {
+                accountMask = null;
+            }
+            this.leafRows = Math.max(MIN_LEAF_ROWS, rows / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        }
+
+        Groups scan(int from, int to) {
+            Groups result = new Groups(groups);
+            long[] counts = result.counts;
+            long[] sums = result.sums;
+            long[] lasts = result.lasts;
+            for (int row = from; row < to; row++) {
+                long timestamp = timestamps.getLong(row * Long.BYTES);
+                if (timestamp < fromMicros || timestamp >= toMicros) {
+                    continue;
+                }
+                int type = typeCodes.get(row);
+                if ((typeMask & (1 << type)) == 0) {
+                    continue;
+                }
+                int account = accountCodes.getInt(row * Integer.BYTES);
+                if (accountMask != null && !accountMask[account]) {
+                    continue;
+                }
+                int group;
+                switch (grouping) {
+                    case ACCOUNT:
+                        group = account;
+                        break;
+                    case TYPE:
+                        group = type;
+                        break;
+                    case TIME_BUCKET:
+                        group = (int) ((timestamp - origin) / width);
+                        break;
+                    default:
+                        group = 0;
+                }
+                counts[group]++;
+                sums[group] = Money.add(sums[group], amounts.getLong(row * Long.BYTES));
+                if (timestamp > lasts[group]) {
+                    lasts[group] = timestamp;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class Scan extends RecursiveTask<Groups> {
+        private static final long serialVersionUID = 1L;
+
+        private final Query query;
+        private final int from;
+        private final int to;
+
+        Scan(Query query, int from, int to) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Groups compute() {
+            if (to - from <= query.leafRows) {
+                return query.scan(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            Scan left = new Scan(query, from, middle);
+            left.fork();
+            Groups right = new Scan(query, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    private static final class Groups {
+        final long[] counts;
+        final long[] sums;
+        final long[] lasts;
+
+        Groups(int groups) {
+            counts = new long[groups];
+            sums = new long[groups];
+            lasts = new long[groups];
+            Arrays.fill(lasts, Long.MIN_VALUE);
+        }
+
+        Groups merge(Groups other) {
+            for (int group = 0; group < counts.length; group++) {
+                counts[group] += other.counts[group];
+                sums[group] = Money.add(sums[group], other.sums[group]);
+                lasts[group] = Math.max(lasts[group], other.lasts[group]);
+            }
+            return this;
+        }
+
+        LedgerTotals totals(int group) {
+            return new LedgerTotals(counts[group], sums[group],
+                counts[group] > 0 ? EpochMicros.fromMicros(lasts[group]) : null);
+        }
+    }
+}
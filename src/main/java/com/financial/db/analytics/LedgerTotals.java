@@ -0,0 +1,18 @@
+package com.financial.db.analytics;
+
+import com.financial.db.model.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregate of a group of ledger rows
+ * @param count Number of transactions
+ * @param amountMinorUnits Sum of their amounts in {@link Money} minor units
+ * @param lastActivity Latest transaction timestamp, or null if the group is empty
+ */
+public record LedgerTotals(long count, long amountMinorUnits, LocalDateTime lastActivity) {
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinorUnits);
+    }
+}
@@ -0,0 +1,369 @@
+package com.financial.db.balance;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.mapping.TransactionMapper;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.AccountStatement;
+import com.financial.db.model.Transaction;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.ReadConsistency;
+import com.financial.db.pool.ReadRouter;
+import com.financial.db.shard.ShardedDatabase;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time balances and statements from periodic balance snapshots.
+ *
+ * At the end of every period, e.g. each midnight, the ledger balance of
+ * every account with rows in that period is written to balance_snapshots:
+ * its previous snapshot plus its rows dated since that snapshot. An
+ * account's balance at any time is then its latest snapshot at or before
+ * that time plus the rows dated since, so a historical query reads at most
+ * one period of the account's ledger instead of all of it. A period is snapshotted only once
+ * it has been over for a delay, giving postings still in flight at the
+ * boundary time to commit. Rows dated more than a minute before they are
+ * written are back-fill: the aggregates trigger adds them to any snapshot
+ * already taken, and a snapshot run and a back-fill exclude each other
+ * through an advisory lock, so every back-filled row is counted either by
+ * the run or by the trigger. The delay must therefore exceed that minute
+ * plus the longest a posting transaction stays open.
+ *
+ * Balances here are sums of ledger rows, the same figure as
+ * account_balances.total_amount, and ignore an account's opening balance.
+ */
+public class BalanceSnapshots extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(BalanceSnapshots.class);
+
+    private static final OperationMetrics TAKE = DbMetrics.operation("BalanceSnapshots.takeSnapshots");
+    private static final OperationMetrics BALANCE_AS_OF = DbMetrics.operation("BalanceSnapshots.getBalanceAsOf");
+    private static final OperationMetrics STATEMENT = DbMetrics.operation("BalanceSnapshots.getStatement");
+
+    /**
+     * Shortest delay allowed; rows dated within this long of being written do not take the snapshot lock
+     */
+    public static final long MIN_DELAY_SECONDS = 60;
+
+    // Exclusive here, shared in the aggregates trigger for back-filled rows
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('balance_snapshots'))";
+    private static final String LAST_RUN_SQL = "SELECT MAX(snapshot_at) FROM balance_snapshot_runs";
+    // Waits for another process taking the same snapshot and then claims nothing
+    private static final String CLAIM_RUN_SQL =
+        "INSERT INTO balance_snapshot_runs (snapshot_at, taken_at) VALUES (?, NOW()) " +
+        "ON CONFLICT (snapshot_at) DO NOTHING";
+    // The first snapshot covers the whole ledger, later ones one period each
+    private static final String FIRST_SNAPSHOT_SQL = snapshotSql("timestamp < ?");
+    private static final String SNAPSHOT_SQL = snapshotSql("timestamp >= ? AND timestamp < ?");
+
+    // The ledger bounds use the (account_number, timestamp) index and prune partitions outside the range
+    private static final String BALANCE_AS_OF_SQL =
+        "WITH s AS (" +
+        "    SELECT balance, snapshot_at FROM balance_snapshots " +
+        "    WHERE account_number = ? AND snapshot_at <= ? ORDER BY snapshot_at DESC LIMIT 1) " +
+        "SELECT COALESCE((SELECT balance FROM s), 0) + COALESCE((" +
+        "    SELECT SUM(amount) FROM transactions WHERE account_number = ? AND timestamp < ? " +
+        "    AND timestamp >= COALESCE((SELECT snapshot_at FROM s), '-infinity'::timestamp)), 0)";
+    private static final String STATEMENT_TRANSACTIONS_SQL =
+        "SELECT * FROM transactions WHERE account_number = ? AND timestamp >= ? AND timestamp < ? " +
+        "ORDER BY timestamp, id";
+
+    private final long periodSeconds;
+    private final long delaySeconds;
+
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * Use the default pool or shards, with the period and delay from
+     * BALANCE_SNAPSHOT_PERIOD_S (default 86400, daily) and
+     * BALANCE_SNAPSHOT_DELAY_S (default 300)
+     */
+    public BalanceSnapshots() {
+        super();
+        this.periodSeconds = Env.getLong("BALANCE_SNAPSHOT_PERIOD_S", 86_400);
+        this.delaySeconds = Env.getLong("BALANCE_SNAPSHOT_DELAY_S", 300);
+        validate();
+    }
+
+    /**
+     * @param pool Pool to borrow connections from
+     * @param readRouter Router for reads; snapshots are always taken on the primary
+     * @param periodSeconds Length of a snapshot period; periods are aligned to midnight, 1970-01-01
+     * @param delaySeconds How long after a period ends its snapshot is taken, at least {@link #MIN_DELAY_SECONDS}
+     */
+    public BalanceSnapshots(ConnectionPool pool, ReadRouter readRouter, long periodSeconds, long delaySeconds) {
+        super(pool, readRouter);
+        this.periodSeconds = periodSeconds;
+        this.delaySeconds = delaySeconds;
+        validate();
+    }
+
+    /**
+     * @param shards Shards to route accounts to; each shard snapshots its own accounts
+     * @param periodSeconds Length of a snapshot period; periods are aligned to midnight, 1970-01-01
+     * @param delaySeconds How long after a period ends its snapshot is taken, at least {@link #MIN_DELAY_SECONDS}
+     */
+    public BalanceSnapshots(ShardedDatabase shards, long periodSeconds, long delaySeconds) {
+        super(shards);
+        this.periodSeconds = periodSeconds;
+        this.delaySeconds = delaySeconds;
+        validate();
+    }
+
+    private void validate() {
+        if (periodSeconds < 1 || delaySeconds < MIN_DELAY_SECONDS) {
+            throw new IllegalArgumentException("Invalid snapshot settings: period " + periodSeconds +
+                "s, delay " + delaySeconds + "s");
+        }
+    }
+
+    /**
+     * Snapshot every period that has ended, plus the delay, since the last
+     * snapshot. The first run only snapshots the latest such period. Safe to
+     * run repeatedly and from several processes, e.g. hourly from cron.
+     * @return Number of account snapshots written
+     */
+    public int takeSnapshots() throws SQLException {
+        LocalDateTime due = periodStart(LocalDateTime.now().minusSeconds(delaySeconds));
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try {
+            int rows = 0;
+            for (int shardRows : queryEveryShard(TAKE, ReadConsistency.PRIMARY, Priority.BULK,
+                    connection -> takeSnapshots(connection, due))) {
+                rows += shardRows;
+            }
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Failed to take balance snapshots", e);
+            throw e;
+        } finally {
+            TAKE.record(start, recorded);
+        }
+    }
+
+    /**
+     * Ledger balance of an account at a point in time
+     * @param accountNumber Account number
+     * @param asOf Time the balance is wanted at; rows dated at or after it are not counted
+     * @return Sum of the account's rows dated before {@code asOf}, zero if there are none
+     */
+    public BigDecimal getBalanceAsOf(String accountNumber, LocalDateTime asOf) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(BALANCE_AS_OF, accountNumber, Priority.READ)) {
+            BigDecimal balance = balanceAsOf(connection, accountNumber, asOf);
+            rows = 1;
+            return balance;
+        } catch (SQLException e) {
+            logger.error("Failed to fetch balance of account {} as of {}", accountNumber, asOf, e);
+            throw e;
+        } finally {
+            BALANCE_AS_OF.record(start, rows);
+        }
+    }
+
+    /**
+     * Statement of an account over a period, e.g. a calendar month
+     * @param accountNumber Account number
+     * @param from Start of the period, included
+     * @param to End of the period, excluded
+     * @return Opening balance, the period's rows oldest first, and closing balance
+     */
+    public AccountStatement getStatement(String accountNumber, LocalDateTime from, LocalDateTime to)
+            throws SQLException {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Statement period is empty: " + from + " to " + to);
+        }
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(STATEMENT, accountNumber, Priority.READ)) {
+            BigDecimal opening = balanceAsOf(connection, accountNumber, from);
+            List<Transaction> transactions = new ArrayList<>();
+            BigDecimal closing = opening;
+            try (PreparedStatement stmt = connection.prepareStatement(STATEMENT_TRANSACTIONS_SQL)) {
+                stmt.setString(1, accountNumber);
+                stmt.setTimestamp(2, Timestamp.valueOf(from));
+                stmt.setTimestamp(3, Timestamp.valueOf(to));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    TransactionMapper mapper = new TransactionMapper();
+                    while (rs.next()) {
+                        Transaction transaction = mapper.read(rs);
+                        closing = closing.add(transaction.getAmount());
+                        transactions.add(transaction);
+                    }
+                }
+            }
+            rows = transactions.size();
+            return new AccountStatement(accountNumber, from, to, opening, closing, transactions);
+        } catch (SQLException e) {
+            logger.error("Failed to build statement for account {} from {} to {}", accountNumber, from, to, e);
+            throw e;
+        } finally {
+            STATEMENT.record(start, rows);
+        }
+    }
+
+    /**
+     * Take snapshots in the background
+     * @param intervalMillis Time between checks for a finished period
+     */
+    public synchronized void start(long intervalMillis) {
+        if (snapshotter != null) {
+            throw new IllegalStateException("Balance snapshots already started");
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "balance-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshots();
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Taking balance snapshots failed", e);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background work started by {@link #start(long)}
+     */
+    public synchronized void stop() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            snapshotter = null;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        super.close();
+    }
+
+    private int takeSnapshots(Connection connection, LocalDateTime due) throws SQLException {
+        LocalDateTime last;
+        try (PreparedStatement stmt = connection.prepareStatement(LAST_RUN_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            Timestamp lastRun = rs.getTimestamp(1);
+            last = lastRun != null ? lastRun.toLocalDateTime() : null;
+        }
+        if (last == null) {
+            return takeSnapshot(connection, null, due);
+        }
+        int rows = 0;
+        for (LocalDateTime at = periodStart(last).plusSeconds(periodSeconds); !at.isAfter(due);
+                at = at.plusSeconds(periodSeconds)) {
+            rows += takeSnapshot(connection, last, at);
+            last = at;
+        }
+        return rows;
+    }
+
+    /**
+     * Write one period's snapshots and record the run in one transaction
+     * @param since End of the previous period, or null for the first snapshot
+     * @param at End of this period
+     */
+    private static int takeSnapshot(Connection connection, LocalDateTime since, LocalDateTime at) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            int rows = 0;
+            // Waits for back-fills in flight; later ones wait for this run and then see it
+            try (PreparedStatement stmt = connection.prepareStatement(LOCK_SQL);
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+            }
+            int claimed;
+            try (PreparedStatement stmt = connection.prepareStatement(CLAIM_RUN_SQL)) {
+                stmt.setTimestamp(1, Timestamp.valueOf(at));
+                claimed = stmt.executeUpdate();
+            }
+            if (claimed > 0) {
+                try (PreparedStatement stmt = connection.prepareStatement(since == null ? FIRST_SNAPSHOT_SQL :
+                        SNAPSHOT_SQL)) {
+                    int index = 1;
+                    stmt.setTimestamp(index++, Timestamp.valueOf(at));
+                    if (since != null) {
+                        stmt.setTimestamp(index++, Timestamp.valueOf(since));
+                    }
+                    stmt.setTimestamp(index++, Timestamp.valueOf(at));
+                    stmt.setTimestamp(index++, Timestamp.valueOf(at));
+                    stmt.setTimestamp(index, Timestamp.valueOf(at));
+                    rows = stmt.executeUpdate();
+                }
+            }
+            connection.commit();
+            if (claimed > 0) {
+                logger.info("Took balance snapshot at {} for {} accounts", at, rows);
+            }
+            return rows;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private static BigDecimal balanceAsOf(Connection connection, String accountNumber, LocalDateTime asOf)
+            throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(BALANCE_AS_OF_SQL)) {
+            stmt.setString(1, accountNumber);
+            stmt.setTimestamp(2, Timestamp.valueOf(asOf));
+            stmt.setString(3, accountNumber);
+            stmt.setTimestamp(4, Timestamp.valueOf(asOf));
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+
+    /**
+     * @return Start of the period containing {@code time}
+     */
+    private LocalDateTime periodStart(LocalDateTime time) {
+        // Ledger timestamps are local wall-clock times; the offset only converts them to a second count
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(seconds, periodSeconds) * periodSeconds, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Snapshot of every account with rows in the window: its previous
+     * snapshot plus all its rows since that snapshot, not only the window's,
+     * so rows back-filled into a period the account had no snapshot for are
+     * still counted
+     */
+    private static String snapshotSql(String window) {
+        return "INSERT INTO balance_snapshots (account_number, snapshot_at, balance) " +
+            "SELECT a.account_number, CAST(? AS TIMESTAMP), COALESCE(p.balance, 0) + d.amount " +
+            "FROM (SELECT DISTINCT account_number FROM transactions WHERE " + window + ") a " +
+            "LEFT JOIN LATERAL (" +
+            "    SELECT balance, snapshot_at FROM balance_snapshots s " +
+            "    WHERE s.account_number = a.account_number AND s.snapshot_at < ? " +
+            "    ORDER BY s.snapshot_at DESC LIMIT 1) p ON true " +
+            "CROSS JOIN LATERAL (" +
+            "    SELECT SUM(amount) AS amount FROM transactions t " +
+            "    WHERE t.account_number = a.account_number " +
+            "    AND t.timestamp >= COALESCE(p.snapshot_at, '-infinity'::timestamp) AND t.timestamp < ?) d " +
+            "ON CONFLICT (account_number, snapshot_at) DO NOTHING";
+    }
+}
@@ -0,0 +1,48 @@
+package com.financial.db.balance;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-process view of which accounts are in hot mode, refreshed by
+ * {@link HotAccounts}. Postings use it only to pick the cheaper statement:
+ * every path stays correct when it is out of date, at worst queueing on the
+ * account row or rejecting a debit the slots could have covered.
+ */
+public final class HotAccountSet {
+    private static final HotAccountSet DEFAULT = new HotAccountSet();
+
+    private volatile Set<String> accounts = Collections.emptySet();
+
+    /**
+     * @return Set shared by every manager in the process
+     */
+    public static HotAccountSet getDefault() {
+        return DEFAULT;
+    }
+
+    public boolean contains(String accountNumber) {
+        return accounts.contains(accountNumber);
+    }
+
+    public int size() {
+        return accounts.size();
+    }
+
+    synchronized void replace(Set<String> hot) {
+        accounts = Collections.unmodifiableSet(new HashSet<>(hot));
+    }
+
+    synchronized void add(String accountNumber) {
+        Set<String> updated = new HashSet<>(accounts);
+        updated.add(accountNumber);
+        accounts = Collections.unmodifiableSet(updated);
+    }
+
+    synchronized void remove(String accountNumber) {
+        Set<String> updated = new HashSet<>(accounts);
+        updated.remove(accountNumber);
+        accounts = Collections.unmodifiableSet(updated);
+    }
+}
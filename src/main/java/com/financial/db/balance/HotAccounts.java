@@ -0,0 +1,385 @@
+package com.financial.db.balance;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.ReadConsistency;
+import com.financial.db.pool.ReadRouter;
+import com.financial.db.shard.ShardedDatabase;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Switches accounts in and out of hot mode and folds their balance slots
+ * back into the account.
+ *
+ * A hot account's deposits credit one of several account_balance_slots rows,
+ * chosen by the posting connection's backend pid, instead of the single
+ * accounts row every posting would otherwise queue on. Debits still lock the
+ * accounts row, as they must see the whole balance: row plus slots.
+ * Consolidation moves the slot balances and aggregates into accounts and
+ * account_balances, keeping the slots small and the reads that sum them
+ * cheap. Each account is consolidated in its own short transaction.
+ */
+public class HotAccounts extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(HotAccounts.class);
+
+    private static final OperationMetrics ENABLE = DbMetrics.operation("HotAccounts.enable");
+    private static final OperationMetrics DISABLE = DbMetrics.operation("HotAccounts.disable");
+    private static final OperationMetrics CONSOLIDATE = DbMetrics.operation("HotAccounts.consolidate");
+    private static final OperationMetrics REFRESH = DbMetrics.operation("HotAccounts.refresh");
+
+    /**
+     * Most slots an account may be spread over
+     */
+    public static final int MAX_SLOTS = 256;
+
+    private static final String LOCK_ACCOUNT_SQL =
+        "SELECT 1 FROM accounts WHERE account_number = ? FOR NO KEY UPDATE";
+    private static final String CREATE_SLOTS_SQL =
+        "INSERT INTO account_balance_slots (account_number, slot) " +
+        "SELECT ?, generate_series(0, ? - 1) ON CONFLICT (account_number, slot) DO NOTHING";
+    private static final String ENABLE_SQL =
+        "INSERT INTO hot_accounts (account_number, slots) VALUES (?, ?) " +
+        "ON CONFLICT (account_number) DO UPDATE SET slots = EXCLUDED.slots";
+    private static final String DISABLE_SQL = "DELETE FROM hot_accounts WHERE account_number = ?";
+
+    // Waits for postings still holding a slot, after which new ones queue behind this transaction
+    private static final String SLOT_TOTALS_SQL =
+        "SELECT COALESCE(SUM(balance), 0), COALESCE(SUM(total_amount), 0), " +
+        "COALESCE(SUM(transaction_count), 0), MAX(last_activity) FROM (" +
+        "    SELECT balance, total_amount, transaction_count, last_activity FROM account_balance_slots " +
+        "    WHERE account_number = ? FOR UPDATE) s";
+    private static final String CLEAR_SLOTS_SQL =
+        "UPDATE account_balance_slots SET balance = 0, total_amount = 0, transaction_count = 0, " +
+        "last_activity = NULL WHERE account_number = ?";
+    private static final String CREDIT_ACCOUNT_SQL =
+        "UPDATE accounts SET balance = balance + ? WHERE account_number = ?";
+    private static final String MERGE_AGGREGATES_SQL =
+        "INSERT INTO account_balances AS b (account_number, total_amount, transaction_count, last_activity) " +
+        "VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (account_number) DO UPDATE SET " +
+        "    total_amount = b.total_amount + EXCLUDED.total_amount, " +
+        "    transaction_count = b.transaction_count + EXCLUDED.transaction_count, " +
+        "    last_activity = GREATEST(b.last_activity, EXCLUDED.last_activity)";
+
+    private static final String HOT_ACCOUNTS_SQL = "SELECT account_number FROM hot_accounts";
+    private static final String UNCONSOLIDATED_SQL =
+        "SELECT DISTINCT account_number FROM account_balance_slots " +
+        "WHERE balance <> 0 OR transaction_count <> 0 ORDER BY account_number";
+
+    private static HotAccounts defaultHotAccounts;
+
+    private ScheduledExecutorService consolidator;
+
+    /**
+     * @param pool Pool to borrow connections from
+     * @param readRouter Router for reads; hot account work always uses the primary
+     */
+    public HotAccounts(ConnectionPool pool, ReadRouter readRouter) {
+        super(pool, readRouter);
+    }
+
+    /**
+     * @param shards Shards to route accounts to
+     */
+    public HotAccounts(ShardedDatabase shards) {
+        super(shards);
+    }
+
+    /**
+     * Process-wide instance on the default pool or shards. Unless
+     * HOT_ACCOUNTS_CONSOLIDATE_INTERVAL_MS is 0 (default 5000) it refreshes
+     * {@link HotAccountSet#getDefault()} and consolidates in the background
+     * at that interval.
+     * @return Shared instance
+     */
+    public static synchronized HotAccounts getDefault() {
+        if (defaultHotAccounts == null) {
+            ShardedDatabase shards = ShardedDatabase.getDefault();
+            HotAccounts hotAccounts = shards != null ? new HotAccounts(shards) :
+                new HotAccounts(ConnectionPool.getDefault(), ReadRouter.getDefault());
+            long interval = Env.getLong("HOT_ACCOUNTS_CONSOLIDATE_INTERVAL_MS", 5_000);
+            if (interval > 0) {
+                hotAccounts.start(interval);
+                Runtime.getRuntime().addShutdownHook(new Thread(hotAccounts::stop, "hot-accounts-shutdown"));
+            }
+            defaultHotAccounts = hotAccounts;
+        }
+        return defaultHotAccounts;
+    }
+
+    /**
+     * Spread an account's postings over slots, or change how many it has.
+     * Slots left over from a larger count keep counting towards the balance
+     * until they are consolidated.
+     * @param accountNumber Account number
+     * @param slots Number of slots, 1 to {@link #MAX_SLOTS}
+     */
+    public void enable(String accountNumber, int slots) throws SQLException {
+        if (slots < 1 || slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("Slots must be between 1 and " + MAX_SLOTS + ": " + slots);
+        }
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(ENABLE, accountNumber)) {
+            connection.setAutoCommit(false);
+            try {
+                lockAccount(connection, accountNumber);
+                // Slots exist before the account is marked hot, so no posting misses its slot
+                try (PreparedStatement stmt = connection.prepareStatement(CREATE_SLOTS_SQL)) {
+                    stmt.setString(1, accountNumber);
+                    stmt.setInt(2, slots);
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(ENABLE_SQL)) {
+                    stmt.setString(1, accountNumber);
+                    stmt.setInt(2, slots);
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            rows = 1;
+            getHotAccounts().add(accountNumber);
+            logger.info("Account {} is hot with {} slots", accountNumber, slots);
+        } catch (SQLException e) {
+            logger.error("Failed to make account {} hot", accountNumber, e);
+            throw e;
+        } finally {
+            ENABLE.record(start, rows);
+        }
+    }
+
+    /**
+     * Post to the account row again, folding the slots back in first
+     * @param accountNumber Account number
+     * @return Whether the account was hot
+     */
+    public boolean disable(String accountNumber) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(DISABLE, accountNumber)) {
+            connection.setAutoCommit(false);
+            int removed;
+            try {
+                lockAccount(connection, accountNumber);
+                consolidate(connection, accountNumber);
+                try (PreparedStatement stmt = connection.prepareStatement(DISABLE_SQL)) {
+                    stmt.setString(1, accountNumber);
+                    removed = stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            rows = removed;
+            getHotAccounts().remove(accountNumber);
+            logger.info("Account {} is no longer hot", accountNumber);
+            return removed > 0;
+        } catch (SQLException e) {
+            logger.error("Failed to cool account {}", accountNumber, e);
+            throw e;
+        } finally {
+            DISABLE.record(start, rows);
+        }
+    }
+
+    /**
+     * Move an account's slot balances and aggregates into the account
+     * @param accountNumber Account number
+     * @return Balance moved out of the slots
+     */
+    public BigDecimal consolidate(String accountNumber) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CONSOLIDATE, accountNumber)) {
+            connection.setAutoCommit(false);
+            BigDecimal moved;
+            try {
+                lockAccount(connection, accountNumber);
+                moved = consolidate(connection, accountNumber);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+            rows = 1;
+            return moved;
+        } catch (SQLException e) {
+            logger.error("Failed to consolidate account {}", accountNumber, e);
+            throw e;
+        } finally {
+            CONSOLIDATE.record(start, rows);
+        }
+    }
+
+    /**
+     * Consolidate every account with something in its slots, including
+     * accounts that are no longer hot
+     * @return Number of accounts consolidated
+     */
+    public int consolidateAll() throws SQLException {
+        int consolidated = 0;
+        for (List<String> accounts : queryEveryShard(CONSOLIDATE, ReadConsistency.PRIMARY,
+                connection -> readAccounts(connection, UNCONSOLIDATED_SQL))) {
+            for (String accountNumber : accounts) {
+                consolidate(accountNumber);
+                consolidated++;
+            }
+        }
+        if (consolidated > 0) {
+            logger.debug("Consolidated {} hot accounts", consolidated);
+        }
+        return consolidated;
+    }
+
+    /**
+     * Reload {@link HotAccountSet#getDefault()} from the database
+     * @return Number of hot accounts
+     */
+    public int refresh() throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            Set<String> hot = new HashSet<>();
+            for (List<String> accounts : queryEveryShard(REFRESH, ReadConsistency.PRIMARY,
+                    connection -> readAccounts(connection, HOT_ACCOUNTS_SQL))) {
+                hot.addAll(accounts);
+            }
+            getHotAccounts().replace(hot);
+            rows = hot.size();
+            return hot.size();
+        } catch (SQLException e) {
+            logger.error("Failed to load hot accounts", e);
+            throw e;
+        } finally {
+            REFRESH.record(start, rows);
+        }
+    }
+
+    /**
+     * Refresh and consolidate in the background
+     * @param intervalMillis Time between runs
+     */
+    public synchronized void start(long intervalMillis) {
+        if (consolidator != null) {
+            throw new IllegalStateException("Hot account consolidation already started");
+        }
+        consolidator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hot-account-consolidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        consolidator.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+                consolidateAll();
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Hot account consolidation failed", e);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background work started by {@link #start(long)}
+     */
+    public synchronized void stop() {
+        if (consolidator != null) {
+            consolidator.shutdownNow();
+            consolidator = null;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        super.close();
+    }
+
+    private static void lockAccount(Connection connection, String accountNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(LOCK_ACCOUNT_SQL)) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new RuntimeException("Account not found");
+                }
+            }
+        }
+    }
+
+    /**
+     * Fold the slots into the account within the caller's transaction, which holds the account row lock
+     */
+    private static BigDecimal consolidate(Connection connection, String accountNumber) throws SQLException {
+        BigDecimal balance;
+        BigDecimal totalAmount;
+        long transactionCount;
+        Timestamp lastActivity;
+        try (PreparedStatement stmt = connection.prepareStatement(SLOT_TOTALS_SQL)) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                balance = rs.getBigDecimal(1);
+                totalAmount = rs.getBigDecimal(2);
+                transactionCount = rs.getLong(3);
+                lastActivity = rs.getTimestamp(4);
+            }
+        }
+        if (balance.signum() == 0 && transactionCount == 0) {
+            return balance;
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(CLEAR_SLOTS_SQL)) {
+            stmt.setString(1, accountNumber);
+            stmt.executeUpdate();
+        }
+        if (balance.signum() != 0) {
+            try (PreparedStatement stmt = connection.prepareStatement(CREDIT_ACCOUNT_SQL)) {
+                stmt.setBigDecimal(1, balance);
+                stmt.setString(2, accountNumber);
+                stmt.executeUpdate();
+            }
+        }
+        if (transactionCount > 0) {
+            try (PreparedStatement stmt = connection.prepareStatement(MERGE_AGGREGATES_SQL)) {
+                stmt.setString(1, accountNumber);
+                stmt.setBigDecimal(2, totalAmount);
+                stmt.setLong(3, transactionCount);
+                stmt.setTimestamp(4, lastActivity);
+                stmt.executeUpdate();
+            }
+        }
+        return balance;
+    }
+
+    private static List<String> readAccounts(Connection connection, String sql) throws SQLException {
+        List<String> accounts = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                accounts.add(rs.getString(1));
+            }
+        }
+        return accounts;
+    }
+}
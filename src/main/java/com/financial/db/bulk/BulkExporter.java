@@ -0,0 +1,110 @@
+package com.financial.db.bulk;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import org.postgresql.PGConnection;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Exports accounts and transactions with COPY ... TO STDOUT.
+ *
+ * The server streams rows straight into the caller's OutputStream, so an
+ * export uses constant client memory however large the table is.
+ */
+public class BulkExporter extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(BulkExporter.class);
+
+    private static final OperationMetrics EXPORT_STATEMENT = DbMetrics.operation("BulkExporter.exportAccountStatement");
+    private static final OperationMetrics EXPORT_TRANSACTIONS = DbMetrics.operation("BulkExporter.exportTransactions");
+    private static final OperationMetrics EXPORT_ACCOUNTS = DbMetrics.operation("BulkExporter.exportAccounts");
+
+    public BulkExporter() {
+        super();
+    }
+
+    /**
+     * Write one account's transactions in chronological order
+     * @param accountNumber Account number
+     * @param out Destination stream; not closed
+     * @param format Output format
+     * @return Number of rows written
+     */
+    public long exportAccountStatement(String accountNumber, OutputStream out, CopyFormat format) throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(EXPORT_STATEMENT, Priority.BULK)) {
+            // COPY cannot take bind parameters, so the account number is inlined as an escaped literal
+            StringBuilder sql = new StringBuilder("COPY (SELECT id, " + BulkLoader.TRANSACTION_COLUMNS +
+                    " FROM transactions WHERE account_number = '");
+            Utils.escapeLiteral(sql, accountNumber, connection.unwrap(BaseConnection.class).getStandardConformingStrings());
+            sql.append("' ORDER BY timestamp, id) TO STDOUT").append(format.withClause());
+
+            long rows = copyOut(connection, sql.toString(), out);
+            logger.info("Exported {} transactions for account {}", rows, accountNumber);
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Error exporting account statement", e);
+            throw e;
+        } finally {
+            EXPORT_STATEMENT.record(start, recorded);
+        }
+    }
+
+    /**
+     * Write every transaction, in id order, for audit
+     * @param out Destination stream; not closed
+     * @param format Output format
+     * @return Number of rows written
+     */
+    public long exportTransactions(OutputStream out, CopyFormat format) throws SQLException {
+        return exportTable(EXPORT_TRANSACTIONS, "transactions", "id, " + BulkLoader.TRANSACTION_COLUMNS, out, format);
+    }
+
+    /**
+     * Write every account, in id order
+     * @param out Destination stream; not closed
+     * @param format Output format
+     * @return Number of rows written
+     */
+    public long exportAccounts(OutputStream out, CopyFormat format) throws SQLException {
+        return exportTable(EXPORT_ACCOUNTS, "accounts", "id, " + BulkLoader.ACCOUNT_COLUMNS, out, format);
+    }
+
+    private long exportTable(OperationMetrics operation, String table, String columns, OutputStream out,
+                             CopyFormat format) throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(operation, Priority.BULK)) {
+            // COPY table TO is rejected for partitioned tables such as transactions; the query form works for any table
+            long rows = copyOut(connection, "COPY (SELECT " + columns + " FROM " + table + " ORDER BY id) TO STDOUT" +
+                format.withClause(), out);
+            logger.info("Exported {} rows from {}", rows, table);
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Error exporting {}", table, e);
+            throw e;
+        } finally {
+            operation.record(start, recorded);
+        }
+    }
+
+    private static long copyOut(Connection connection, String sql, OutputStream out) throws SQLException {
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+        } catch (IOException e) {
+            throw new SQLException("Failed to write COPY output", e);
+        }
+    }
+}
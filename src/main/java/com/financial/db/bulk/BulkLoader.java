@@ -0,0 +1,259 @@
+package com.financial.db.bulk;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.Transaction;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+
+/**
+ * Loads accounts and transactions with COPY ... FROM STDIN.
+ *
+ * Input is streamed straight to the server, so memory use does not depend on
+ * the number of rows. Direct loads go into the target table; staged loads
+ * copy into a temporary table first and merge from there in the same
+ * database transaction.
+ */
+public class BulkLoader extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+    static final String ACCOUNT_COLUMNS = "account_number, balance, owner_name, type, created_at";
+    static final String TRANSACTION_COLUMNS = "account_number, amount, type, timestamp, description";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final OperationMetrics LOAD_ACCOUNTS = DbMetrics.operation("BulkLoader.loadAccounts");
+    private static final OperationMetrics LOAD_TRANSACTIONS = DbMetrics.operation("BulkLoader.loadTransactions");
+    private static final OperationMetrics MERGE_ACCOUNTS = DbMetrics.operation("BulkLoader.mergeAccounts");
+    private static final OperationMetrics MERGE_TRANSACTIONS = DbMetrics.operation("BulkLoader.mergeTransactions");
+
+    public BulkLoader() {
+        super();
+    }
+
+    /**
+     * Copy accounts straight into the accounts table
+     * @param in Rows with columns (account_number, balance, owner_name, type, created_at)
+     * @param format Format of the input
+     * @return Number of rows loaded
+     */
+    public long loadAccounts(InputStream in, CopyFormat format) throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(LOAD_ACCOUNTS, Priority.BULK)) {
+            long rows = copyIn(connection, "COPY accounts (" + ACCOUNT_COLUMNS + ") FROM STDIN" + format.withClause(), in);
+            getAccountCache().invalidateAll();
+            logger.info("Loaded {} accounts", rows);
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Error loading accounts", e);
+            throw e;
+        } finally {
+            LOAD_ACCOUNTS.record(start, recorded);
+        }
+    }
+
+    /**
+     * Copy transactions straight into the transactions table
+     * @param in Rows with columns (account_number, amount, type, timestamp, description)
+     * @param format Format of the input
+     * @return Number of rows loaded
+     */
+    public long loadTransactions(InputStream in, CopyFormat format) throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(LOAD_TRANSACTIONS, Priority.BULK)) {
+            long rows = copyIn(connection, "COPY transactions (" + TRANSACTION_COLUMNS + ") FROM STDIN" + format.withClause(), in);
+            logger.info("Loaded {} transactions", rows);
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Error loading transactions", e);
+            throw e;
+        } finally {
+            LOAD_TRANSACTIONS.record(start, recorded);
+        }
+    }
+
+    /**
+     * Encode transactions to COPY text format as they are pulled from the iterator
+     * @param transactions Transactions to load; consumed lazily
+     * @return Number of rows loaded
+     */
+    public long loadTransactions(Iterator<Transaction> transactions) throws SQLException {
+        String sql = "COPY transactions (" + TRANSACTION_COLUMNS + ") FROM STDIN" + CopyFormat.TEXT.withClause();
+        long rows = 0;
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(LOAD_TRANSACTIONS, Priority.BULK)) {
+            PGCopyOutputStream copy = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, BUFFER_SIZE);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(copy, StandardCharsets.UTF_8), BUFFER_SIZE);
+                while (transactions.hasNext()) {
+                    writeTransaction(writer, transactions.next());
+                    rows++;
+                }
+                writer.flush();
+                copy.endCopy();
+            } catch (IOException | RuntimeException e) {
+                // Cancelling discards the rows sent so far instead of committing a partial load
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+                throw e;
+            }
+            logger.info("Loaded {} transactions", rows);
+            recorded = rows;
+            return rows;
+        } catch (IOException e) {
+            logger.error("Error loading transactions", e);
+            throw new SQLException("Failed to stream transactions to COPY", e);
+        } catch (SQLException e) {
+            logger.error("Error loading transactions", e);
+            throw e;
+        } finally {
+            LOAD_TRANSACTIONS.record(start, recorded);
+        }
+    }
+
+    /**
+     * Copy accounts into a staging table and upsert them into accounts by account number
+     * @param in Rows with columns (account_number, balance, owner_name, type, created_at)
+     * @param format Format of the input
+     * @return Staged and merged row counts
+     */
+    public MergeResult mergeAccounts(InputStream in, CopyFormat format) throws SQLException {
+        String createStaging = "CREATE TEMP TABLE accounts_staging ON COMMIT DROP AS " +
+                "SELECT " + ACCOUNT_COLUMNS + " FROM accounts WITH NO DATA";
+        String merge = "INSERT INTO accounts (" + ACCOUNT_COLUMNS + ") " +
+                "SELECT DISTINCT ON (account_number) " + ACCOUNT_COLUMNS + " FROM accounts_staging " +
+                "ORDER BY account_number " +
+                "ON CONFLICT (account_number) DO UPDATE SET " +
+                "balance = EXCLUDED.balance, owner_name = EXCLUDED.owner_name, type = EXCLUDED.type";
+        MergeResult result = stageAndMerge(MERGE_ACCOUNTS, createStaging, "accounts_staging", ACCOUNT_COLUMNS, merge, in, format);
+        getAccountCache().invalidateAll();
+        return result;
+    }
+
+    /**
+     * Copy transactions into a staging table and append those whose account exists
+     * @param in Rows with columns (account_number, amount, type, timestamp, description)
+     * @param format Format of the input
+     * @return Staged and merged row counts; rows for unknown accounts are rejected
+     */
+    public MergeResult mergeTransactions(InputStream in, CopyFormat format) throws SQLException {
+        String createStaging = "CREATE TEMP TABLE transactions_staging ON COMMIT DROP AS " +
+                "SELECT " + TRANSACTION_COLUMNS + " FROM transactions WITH NO DATA";
+        String merge = "INSERT INTO transactions (" + TRANSACTION_COLUMNS + ") " +
+                "SELECT s.account_number, s.amount, s.type, s.timestamp, s.description " +
+                "FROM transactions_staging s " +
+                "INNER JOIN accounts a ON a.account_number = s.account_number " +
+                "ORDER BY s.timestamp";
+        return stageAndMerge(MERGE_TRANSACTIONS, createStaging, "transactions_staging", TRANSACTION_COLUMNS, merge, in, format);
+    }
+
+    private MergeResult stageAndMerge(OperationMetrics operation, String createStaging, String stagingTable,
+                                      String columns, String merge, InputStream in, CopyFormat format) throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(operation, Priority.BULK)) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(createStaging);
+                }
+                long staged = copyIn(connection, "COPY " + stagingTable + " (" + columns + ") FROM STDIN" + format.withClause(), in);
+                long merged;
+                try (Statement stmt = connection.createStatement()) {
+                    merged = stmt.executeUpdate(merge);
+                }
+                connection.commit();
+                MergeResult result = new MergeResult(staged, merged);
+                if (result.getRejected() > 0) {
+                    logger.warn("Merge from {} rejected {} rows", stagingTable, result.getRejected());
+                }
+                logger.info("Merged from {}: {}", stagingTable, result);
+                recorded = merged;
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Error merging from {}", stagingTable, e);
+            throw e;
+        } finally {
+            operation.record(start, recorded);
+        }
+    }
+
+    private static long copyIn(Connection connection, String sql, InputStream in) throws SQLException {
+        CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+        try {
+            return copyManager.copyIn(sql, in, BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read COPY input", e);
+        }
+    }
+
+    private static void writeTransaction(Writer writer, Transaction transaction) throws IOException {
+        LocalDateTime timestamp = transaction.getTimestamp() != null ? transaction.getTimestamp() : LocalDateTime.now();
+        writeField(writer, transaction.getAccountNumber());
+        writer.write('\t');
+        writer.write(transaction.getAmount().toPlainString());
+        writer.write('\t');
+        writer.write(transaction.getType().name());
+        writer.write('\t');
+        writer.write(timestamp.toString());
+        writer.write('\t');
+        writeField(writer, transaction.getDescription());
+        writer.write('\n');
+    }
+
+    /**
+     * Write a value escaped for COPY text format, where \N stands for NULL
+     */
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+}
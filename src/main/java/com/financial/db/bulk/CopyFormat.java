@@ -0,0 +1,21 @@
+package com.financial.db.bulk;
+
+/**
+ * Wire formats understood by COPY. Binary is the fastest to parse on the
+ * server but is tied to PostgreSQL's internal representations.
+ */
+public enum CopyFormat {
+    TEXT("text"),
+    CSV("csv"),
+    BINARY("binary");
+
+    private final String option;
+
+    CopyFormat(String option) {
+        this.option = option;
+    }
+
+    String withClause() {
+        return " WITH (FORMAT " + option + ")";
+    }
+}
@@ -0,0 +1,35 @@
+package com.financial.db.bulk;
+
+/**
+ * Row counts from a staged load: how many rows were copied into the staging
+ * table and how many of them made it into the target table.
+ */
+public class MergeResult {
+    private final long staged;
+    private final long merged;
+
+    public MergeResult(long staged, long merged) {
+        this.staged = staged;
+        this.merged = merged;
+    }
+
+    public long getStaged() {
+        return staged;
+    }
+
+    public long getMerged() {
+        return merged;
+    }
+
+    public long getRejected() {
+        return staged - merged;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeResult{" +
+                "staged=" + staged +
+                ", merged=" + merged +
+                '}';
+    }
+}
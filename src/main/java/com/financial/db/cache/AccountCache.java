@@ -0,0 +1,235 @@
+package com.financial.db.cache;
+
+import com.financial.db.model.Account;
+import com.financial.db.util.Env;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size-bounded LRU cache of accounts by account number, with an optional TTL.
+ *
+ * Concurrent misses for the same key share one load. Writers call
+ * {@link #invalidate(String)} after they commit; a load that started before
+ * an invalidation of the same account, or before {@link #invalidateAll()},
+ * is not cached, so a reader can never reinstate a balance that was
+ * overwritten while it was in flight. Invalidations of other accounts do not
+ * affect it. Accounts are copied on the
+ * way in and out so callers cannot mutate cached state.
+ */
+public class AccountCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        Account load(String accountNumber) throws SQLException;
+    }
+
+    private static AccountCache defaultCache;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<Account>> inFlight = new ConcurrentHashMap<>();
+    // Invalidation sequence; loads remember where it stood when they started
+    private final AtomicLong sequence = new AtomicLong();
+    // Latest invalidation per account, kept only while the account has a load in flight
+    private final ConcurrentHashMap<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxSize Maximum cached accounts; zero disables caching
+     * @param ttlMillis Time after loading that an entry expires; zero for no expiry
+     */
+    public AccountCache(int maxSize, long ttlMillis) {
+        if (maxSize < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache size and TTL must not be negative");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Process-wide cache sized from ACCOUNT_CACHE_MAX_SIZE and ACCOUNT_CACHE_TTL_MS
+     * @return Shared account cache
+     */
+    public static synchronized AccountCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new AccountCache(
+                Env.getInt("ACCOUNT_CACHE_MAX_SIZE", 10_000),
+                Env.getLong("ACCOUNT_CACHE_TTL_MS", 0));
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Return the cached account or load it, sharing the load with concurrent callers
+     * @param accountNumber Account number
+     * @param loader Loads the account on a miss; may return null, which is not cached
+     * @return Copy of the account, or null if it does not exist
+     */
+    public Account get(String accountNumber, Loader loader) throws SQLException {
+        Account cached = lookup(accountNumber);
+        if (cached != null) {
+            hits.increment();
+            return copy(cached);
+        }
+        misses.increment();
+        if (maxSize == 0) {
+            return loader.load(accountNumber);
+        }
+
+        CompletableFuture<Account> mine = new CompletableFuture<>();
+        CompletableFuture<Account> existing = inFlight.putIfAbsent(accountNumber, mine);
+        if (existing != null) {
+            return copy(await(existing));
+        }
+
+        // Read after registering the load, so an invalidation either sees the load or precedes it
+        long loadStartedAt = sequence.get();
+        try {
+            Account loaded = loader.load(accountNumber);
+            if (loaded != null) {
+                store(accountNumber, copy(loaded), loadStartedAt);
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (SQLException | RuntimeException e) {
+            loadFailures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Before the load is deregistered, so the entry of a later load is never removed
+            invalidatedAt.remove(accountNumber);
+            inFlight.remove(accountNumber, mine);
+        }
+    }
+
+    /**
+     * Drop an account whose row has changed. Call after the change commits.
+     */
+    public void invalidate(String accountNumber) {
+        long version = sequence.incrementAndGet();
+        if (inFlight.containsKey(accountNumber)) {
+            invalidatedAt.merge(accountNumber, version, Math::max);
+        }
+        lock.lock();
+        try {
+            entries.remove(accountNumber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        clearedAt = sequence.incrementAndGet();
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStats getStats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), loadFailures.sum(), evictions.sum(), expirations.sum(), size);
+    }
+
+    private Account lookup(String accountNumber) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(accountNumber);
+            if (entry == null) {
+                return null;
+            }
+            if (ttlNanos > 0 && System.nanoTime() - entry.loadedAtNanos > ttlNanos) {
+                entries.remove(accountNumber);
+                expirations.increment();
+                return null;
+            }
+            return entry.account;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(String accountNumber, Account account, long loadStartedAt) {
+        lock.lock();
+        try {
+            // Checked under the lock so an invalidation cannot slip in between the check and the put
+            if (clearedAt > loadStartedAt || invalidatedAt.getOrDefault(accountNumber, 0L) > loadStartedAt) {
+                return;
+            }
+            entries.put(accountNumber, new Entry(account, System.nanoTime()));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Account await(CompletableFuture<Account> load) throws SQLException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for account load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Account load failed", cause);
+        }
+    }
+
+    private static Account copy(Account account) {
+        if (account == null) {
+            return null;
+        }
+        Account copy = new Account(account.getId(), account.getAccountNumber(), account.getBalance(), account.getOwnerName());
+        copy.setCreatedAt(account.getCreatedAt());
+        copy.setType(account.getType());
+        return copy;
+    }
+
+    private static final class Entry {
+        private final Account account;
+        private final long loadedAtNanos;
+
+        private Entry(Account account, long loadedAtNanos) {
+            this.account = account;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.financial.db.cache;
+
+/**
+ * Point-in-time counters for an {@link AccountCache}.
+ */
+public class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long loadFailures;
+    private final long evictions;
+    private final long expirations;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long loadFailures, long evictions, long expirations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.loadFailures = loadFailures;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", loadFailures=" + loadFailures +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,174 @@
+package com.financial.db.dao;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.AccountActivity;
+import com.financial.db.pool.ReadConsistency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads and maintains the account_balances aggregate table, which the
+ * transactions_aggregate trigger keeps in step with every ledger insert.
+ * Hot accounts keep part of their aggregates in balance slots; reads go
+ * through the account_balance_totals view, which adds them back in.
+ */
+public class AccountBalanceDAO extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(AccountBalanceDAO.class);
+
+    private static final OperationMetrics ACTIVITY = DbMetrics.operation("AccountBalanceDAO.getAccountActivity");
+    private static final OperationMetrics VERIFY = DbMetrics.operation("AccountBalanceDAO.verify");
+    private static final OperationMetrics REBUILD = DbMetrics.operation("AccountBalanceDAO.rebuild");
+
+    private static final String LEDGER_TOTALS =
+        "SELECT account_number, SUM(amount) AS total_amount, COUNT(*) AS transaction_count, " +
+        "MAX(timestamp) AS last_activity FROM transactions GROUP BY account_number";
+
+    public AccountBalanceDAO() {
+        super();
+    }
+
+    public List<AccountActivity> getAccountActivity() throws SQLException {
+        String sql = "SELECT account_number, total_amount, transaction_count, last_activity " +
+                     "FROM account_balance_totals ORDER BY account_number";
+        List<AccountActivity> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            for (List<AccountActivity> shardResults : queryEveryShard(ACTIVITY, ReadConsistency.PRIMARY, connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    List<AccountActivity> activity = new ArrayList<>();
+                    while (rs.next()) {
+                        activity.add(new AccountActivity(
+                            rs.getString("account_number"),
+                            rs.getBigDecimal("total_amount"),
+                            rs.getLong("transaction_count"),
+                            rs.getTimestamp("last_activity").toLocalDateTime()
+                        ));
+                    }
+                    return activity;
+                }
+            })) {
+                results.addAll(shardResults);
+            }
+            if (getShards() != null) {
+                results.sort(Comparator.comparing(AccountActivity::getAccountNumber));
+            }
+            rows = results.size();
+        } catch (SQLException e) {
+            logger.error("Failed to fetch account activity", e);
+            throw e;
+        } finally {
+            ACTIVITY.record(start, rows);
+        }
+
+        return results;
+    }
+
+    /**
+     * Compare the aggregate table with a full scan of the ledger
+     * @return Account numbers whose aggregates disagree with the ledger
+     */
+    public List<String> verify() throws SQLException {
+        String sql = "SELECT COALESCE(l.account_number, b.account_number) AS account_number " +
+                     "FROM (" + LEDGER_TOTALS + ") l " +
+                     "FULL OUTER JOIN account_balance_totals b ON b.account_number = l.account_number " +
+                     "WHERE l.total_amount IS DISTINCT FROM b.total_amount " +
+                     "OR l.transaction_count IS DISTINCT FROM b.transaction_count " +
+                     "OR l.last_activity IS DISTINCT FROM b.last_activity " +
+                     "ORDER BY 1";
+        List<String> mismatched = new ArrayList<>();
+
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            for (List<String> shardMismatched : queryEveryShard(VERIFY, ReadConsistency.PRIMARY, Priority.BULK, connection -> {
+                try (PreparedStatement stmt = connection.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    List<String> accounts = new ArrayList<>();
+                    while (rs.next()) {
+                        accounts.add(rs.getString("account_number"));
+                    }
+                    return accounts;
+                }
+            })) {
+                mismatched.addAll(shardMismatched);
+            }
+            if (getShards() != null) {
+                Collections.sort(mismatched);
+            }
+            rows = mismatched.size();
+        } catch (SQLException e) {
+            logger.error("Failed to verify account balances", e);
+            throw e;
+        } finally {
+            VERIFY.record(start, rows);
+        }
+
+        if (mismatched.isEmpty()) {
+            logger.info("Account balance aggregates match the ledger");
+        } else {
+            logger.warn("{} accounts have aggregates that disagree with the ledger", mismatched.size());
+        }
+        return mismatched;
+    }
+
+    /**
+     * Recompute the aggregate table from the ledger. Inserts into transactions
+     * are blocked until the rebuild commits so no posting is missed. Slot
+     * aggregates are cleared, as their postings are counted in the table again. With
+     * shards every shard rebuilds its own aggregates in its own transaction.
+     * @return Number of accounts with aggregates
+     */
+    public int rebuild() throws SQLException {
+        long start = System.nanoTime();
+        long recorded = OperationMetrics.FAILED;
+        try {
+            int rows = 0;
+            for (int shardRows : queryEveryShard(REBUILD, ReadConsistency.PRIMARY, Priority.BULK,
+                    AccountBalanceDAO::rebuild)) {
+                rows += shardRows;
+            }
+            logger.info("Rebuilt account balance aggregates for {} accounts", rows);
+            recorded = rows;
+            return rows;
+        } catch (SQLException e) {
+            logger.error("Failed to rebuild account balances", e);
+            throw e;
+        } finally {
+            REBUILD.record(start, recorded);
+        }
+    }
+
+    private static int rebuild(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("LOCK TABLE transactions IN SHARE MODE");
+            stmt.executeUpdate("DELETE FROM account_balances");
+            stmt.executeUpdate("UPDATE account_balance_slots SET total_amount = 0, transaction_count = 0, " +
+                "last_activity = NULL WHERE transaction_count <> 0");
+            int rows = stmt.executeUpdate(
+                "INSERT INTO account_balances (account_number, total_amount, transaction_count, last_activity) " +
+                LEDGER_TOTALS);
+            connection.commit();
+            return rows;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+}
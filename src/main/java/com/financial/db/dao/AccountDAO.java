@@ -1,6 +1,12 @@
 package com.financial.db.dao;
 
 import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.cache.CacheStats;
+import com.financial.db.feed.ChangeFeed;
+import com.financial.db.mapping.AccountMapper;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
 import com.financial.db.model.Account;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,17 +17,39 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 public class AccountDAO extends FinancialDatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(AccountDAO.class);
 
+    private static final OperationMetrics CREATE_ACCOUNT = DbMetrics.operation("AccountDAO.createAccount");
+    private static final OperationMetrics CREATE_ACCOUNTS = DbMetrics.operation("AccountDAO.createAccounts");
+    private static final OperationMetrics GET_ACCOUNT = DbMetrics.operation("AccountDAO.getAccountByNumber");
+
+    private static final MultiRowInsert<Account> BATCH_INSERT = new MultiRowInsert<>(
+        "accounts",
+        new String[] { "account_number", "balance", "owner_name", "type", "created_at" },
+        (stmt, i, account) -> {
+            stmt.setString(i, account.getAccountNumber());
+            stmt.setBigDecimal(i + 1, account.getBalance());
+            stmt.setString(i + 2, account.getOwnerName());
+            stmt.setString(i + 3, account.getType().name());
+            stmt.setTimestamp(i + 4, Timestamp.valueOf(
+                account.getCreatedAt() != null ? account.getCreatedAt() : LocalDateTime.now()));
+        },
+        Account::setId);
+
     public AccountDAO() {
         super();
+        // Keep the shared account cache in step with writes from other instances, if enabled
+        ChangeFeed.getDefault();
     }
 
     public void createAccount(Account account) throws SQLException {
         String sql = "INSERT INTO accounts (account_number, balance, owner_name, type, created_at) VALUES (?, ?, ?, ?, ?)";
-        try (Connection connection = getConnection();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CREATE_ACCOUNT, account.getAccountNumber());
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             
             stmt.setString(1, account.getAccountNumber());
@@ -29,32 +57,98 @@ public class AccountDAO extends FinancialDatabaseManager {
             stmt.setString(3, account.getOwnerName());
             stmt.setString(4, account.getType().name());
             stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.executeUpdate();
+            rows = stmt.executeUpdate();
+            getAccountCache().invalidate(account.getAccountNumber());
         } catch (SQLException e) {
             logger.error("Error creating account", e);
             throw e;
+        } finally {
+            CREATE_ACCOUNT.record(start, rows);
+        }
+    }
+
+    /**
+     * Insert accounts in multi-row chunks of {@value MultiRowInsert#DEFAULT_CHUNK_SIZE}, committing once per chunk
+     * @param accounts Accounts to insert; generated ids are set on them
+     * @return Generated ids and the rows that failed
+     */
+    public BatchResult createAccounts(Collection<Account> accounts) throws SQLException {
+        return createAccounts(accounts, MultiRowInsert.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Insert accounts in multi-row chunks, committing once per chunk. With
+     * shards each shard gets its own chunks.
+     * @param accounts Accounts to insert; generated ids are set on them
+     * @param chunkSize Rows per statement and per commit
+     * @return Generated ids and the rows that failed
+     */
+    public BatchResult createAccounts(Collection<Account> accounts, int chunkSize) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            BatchResult result = insert(accounts, chunkSize);
+            for (Account account : accounts) {
+                getAccountCache().invalidate(account.getAccountNumber());
+            }
+            if (result.hasFailures()) {
+                logger.warn("Batch account insert: {}", result);
+            }
+            rows = accounts.size() - result.getFailures().size();
+            return result;
+        } catch (SQLException e) {
+            logger.error("Error creating accounts", e);
+            throw e;
+        } finally {
+            CREATE_ACCOUNTS.record(start, rows);
+        }
+    }
+
+    private BatchResult insert(Collection<Account> accounts, int chunkSize) throws SQLException {
+        if (getShards() != null) {
+            return BATCH_INSERT.execute(getShards(), Account::getAccountNumber, accounts, chunkSize);
+        }
+        try (Connection connection = getConnection(CREATE_ACCOUNTS)) {
+            return BATCH_INSERT.execute(connection, accounts, chunkSize);
         }
     }
 
+    /**
+     * Look up an account, served from the account cache when possible. The
+     * recorded latency includes cache hits; acquire time only cache misses.
+     * @param accountNumber Account number
+     * @return Account, or null if it does not exist
+     */
     public Account getAccountByNumber(String accountNumber) throws SQLException {
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            Account account = getAccountCache().get(accountNumber, this::loadAccount);
+            rows = account != null ? 1 : 0;
+            return account;
+        } finally {
+            GET_ACCOUNT.record(start, rows);
+        }
+    }
+
+    public CacheStats getCacheStats() {
+        return getAccountCache().getStats();
+    }
+
+    private Account loadAccount(String accountNumber) throws SQLException {
+        // A hot account's balance includes its slots
+        String sql = "SELECT a.id, a.account_number, a.balance + COALESCE((SELECT SUM(s.balance) " +
+                     "FROM account_balance_slots s WHERE s.account_number = a.account_number), 0) AS balance, " +
+                     "a.owner_name, a.created_at, a.type FROM accounts a WHERE a.account_number = ?";
         
-        try (Connection connection = getConnection();
+        try (Connection connection = getConnection(GET_ACCOUNT, accountNumber, Priority.READ);
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             
             stmt.setString(1, accountNumber);
             ResultSet rs = stmt.executeQuery();
             
             if (rs.next()) {
-                Account account = new Account();
-                account.setId(rs.getLong("id"));
-                account.setAccountNumber(rs.getString("account_number"));
-                account.setBalance(rs.getBigDecimal("balance"));
-                account.setOwnerName(rs.getString("owner_name"));
-                account.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-                account.setType(Account.AccountType.valueOf(rs.getString("type")));
-                
-                return account;
+                return new AccountMapper().read(rs);
             }
             
         } catch (SQLException e) {
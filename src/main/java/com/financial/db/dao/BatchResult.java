@@ -0,0 +1,51 @@
+package com.financial.db.dao;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch insert. Generated ids are listed in input order, with
+ * {@code null} at the position of every row that failed.
+ */
+public class BatchResult {
+    private final List<Long> generatedIds;
+    private final Map<Integer, SQLException> failures;
+
+    public BatchResult(List<Long> generatedIds, Map<Integer, SQLException> failures) {
+        this.generatedIds = Collections.unmodifiableList(generatedIds);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    public List<Long> getGeneratedIds() {
+        return generatedIds;
+    }
+
+    /**
+     * @return Map of input position to the error that rejected that row
+     */
+    public Map<Integer, SQLException> getFailures() {
+        return failures;
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    public int getSuccessCount() {
+        return generatedIds.size() - failures.size();
+    }
+
+    public int getFailureCount() {
+        return failures.size();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "succeeded=" + getSuccessCount() +
+                ", failed=" + getFailureCount() +
+                '}';
+    }
+}
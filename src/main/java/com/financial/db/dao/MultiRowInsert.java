@@ -0,0 +1,218 @@
+package com.financial.db.dao;
+
+import com.financial.db.admission.AdmissionController;
+import com.financial.db.admission.Priority;
+import com.financial.db.shard.ShardMap;
+import com.financial.db.shard.ShardedDatabase;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Chunked multi-row INSERT ... VALUES (...), (...).
+ *
+ * Ids are drawn from the table's id sequence before each chunk and bound
+ * with the rows, so every id is tied to its row rather than to the order
+ * RETURNING happens to produce. Each chunk is a single statement and a single
+ * commit. If a chunk is rejected it is rolled back and replayed row by row
+ * under savepoints with the same ids, so the good rows still land and every
+ * bad row is reported by position. Ids are handed to the rows only once
+ * their chunk has committed.
+ */
+final class MultiRowInsert<T> {
+    static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    // PostgreSQL's wire protocol allows at most this many bind parameters per statement
+    private static final int MAX_PARAMETERS = 32767;
+
+    interface RowBinder<T> {
+        /**
+         * Bind one row's values starting at the given parameter index
+         */
+        void bind(PreparedStatement stmt, int index, T row) throws SQLException;
+    }
+
+    interface IdSink<T> {
+        void accept(T row, long id);
+    }
+
+    private final String insertPrefix;
+    private final String rowPlaceholder;
+    private final String allocateIdsSql;
+    private final int parametersPerRow;
+    private final RowBinder<T> binder;
+    private final IdSink<T> idSink;
+
+    MultiRowInsert(String table, String[] columns, RowBinder<T> binder, IdSink<T> idSink) {
+        this.insertPrefix = "INSERT INTO " + table + " (id, " + String.join(", ", columns) + ") VALUES ";
+        this.rowPlaceholder = "(" + "?, ".repeat(columns.length) + "?)";
+        // The sequence is looked up once per statement, not once per id
+        this.allocateIdsSql = "SELECT nextval(s.name) FROM pg_get_serial_sequence('" + table + "', 'id') AS s(name), " +
+            "generate_series(1, ?)";
+        this.parametersPerRow = columns.length + 1;
+        this.binder = binder;
+        this.idSink = idSink;
+    }
+
+    BatchResult execute(Connection connection, Collection<T> rows, int chunkSize) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        int effectiveChunk = Math.min(chunkSize, MAX_PARAMETERS / parametersPerRow);
+        List<T> all = rows instanceof List ? (List<T>) rows : new ArrayList<>(rows);
+        List<Long> ids = new ArrayList<>(all.size());
+        Map<Integer, SQLException> failures = new TreeMap<>();
+
+        connection.setAutoCommit(false);
+        try {
+            String fullChunkSql = sql(effectiveChunk);
+            for (int start = 0; start < all.size(); start += effectiveChunk) {
+                List<T> chunk = all.subList(start, Math.min(start + effectiveChunk, all.size()));
+                String sql = chunk.size() == effectiveChunk ? fullChunkSql : sql(chunk.size());
+                long[] allocated = allocateIds(connection, chunk.size());
+                Long[] chunkIds;
+                try {
+                    insertChunk(connection, sql, chunk, allocated);
+                    connection.commit();
+                    chunkIds = new Long[chunk.size()];
+                    for (int i = 0; i < chunk.size(); i++) {
+                        chunkIds[i] = allocated[i];
+                    }
+                } catch (SQLException e) {
+                    connection.rollback();
+                    chunkIds = insertRowByRow(connection, chunk, allocated, start, failures);
+                    connection.commit();
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (chunkIds[i] != null) {
+                        idSink.accept(chunk.get(i), chunkIds[i]);
+                    }
+                    ids.add(chunkIds[i]);
+                }
+            }
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        return new BatchResult(ids, failures);
+    }
+
+    /**
+     * Insert every row on the shard that owns its account, one shard after
+     * another. Rows whose bucket is being moved fail with a
+     * {@link SQLTransientException}.
+     * @return Generated ids and failures by position in the input, as for an unsharded insert
+     */
+    BatchResult execute(ShardedDatabase shards, Function<T, String> accountNumber, Collection<T> rows,
+                        int chunkSize) throws SQLException {
+        List<T> all = rows instanceof List ? (List<T>) rows : new ArrayList<>(rows);
+        ShardMap map = shards.getShardMap();
+        Long[] ids = new Long[all.size()];
+        Map<Integer, SQLException> failures = new TreeMap<>();
+        Map<Integer, List<Integer>> positionsByShard = new TreeMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            String account = accountNumber.apply(all.get(i));
+            if (map.isMoving(ShardMap.bucketOf(account))) {
+                failures.put(i, new SQLTransientException("Account " + account + " is being moved between shards"));
+                continue;
+            }
+            positionsByShard.computeIfAbsent(map.shardOf(account), shard -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : positionsByShard.entrySet()) {
+            List<Integer> positions = entry.getValue();
+            List<T> subset = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                subset.add(all.get(position));
+            }
+            BatchResult result;
+            try (Connection connection = AdmissionController.withStatementTimeout(
+                    shards.getShard(entry.getKey()).getConnection(), Priority.POSTING)) {
+                result = execute(connection, subset, chunkSize);
+            }
+            for (int i = 0; i < positions.size(); i++) {
+                ids[positions.get(i)] = result.getGeneratedIds().get(i);
+            }
+            for (Map.Entry<Integer, SQLException> failure : result.getFailures().entrySet()) {
+                failures.put(positions.get(failure.getKey()), failure.getValue());
+            }
+        }
+        return new BatchResult(Arrays.asList(ids), failures);
+    }
+
+    /**
+     * Take ids from the sequence; a rolled-back insert leaves them unused, as a failed single insert would
+     */
+    private long[] allocateIds(Connection connection, int count) throws SQLException {
+        long[] allocated = new long[count];
+        try (PreparedStatement stmt = connection.prepareStatement(allocateIdsSql)) {
+            stmt.setInt(1, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                for (int i = 0; i < count; i++) {
+                    if (!rs.next()) {
+                        throw new SQLException("Sequence returned " + i + " of " + count + " ids");
+                    }
+                    allocated[i] = rs.getLong(1);
+                }
+            }
+        }
+        return allocated;
+    }
+
+    private void insertChunk(Connection connection, String sql, List<T> chunk, long[] allocated) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = 0; i < chunk.size(); i++) {
+                stmt.setLong(index, allocated[i]);
+                binder.bind(stmt, index + 1, chunk.get(i));
+                index += parametersPerRow;
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return Id of each row, null where the row failed
+     */
+    private Long[] insertRowByRow(Connection connection, List<T> chunk, long[] allocated, int offset,
+                                  Map<Integer, SQLException> failures) throws SQLException {
+        Long[] chunkIds = new Long[chunk.size()];
+        try (PreparedStatement stmt = connection.prepareStatement(sql(1))) {
+            for (int i = 0; i < chunk.size(); i++) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    stmt.setLong(1, allocated[i]);
+                    binder.bind(stmt, 2, chunk.get(i));
+                    stmt.executeUpdate();
+                    connection.releaseSavepoint(savepoint);
+                    chunkIds[i] = allocated[i];
+                } catch (SQLException e) {
+                    connection.rollback(savepoint);
+                    failures.put(offset + i, e);
+                }
+            }
+        }
+        return chunkIds;
+    }
+
+    private String sql(int rowCount) {
+        StringBuilder sql = new StringBuilder(insertPrefix.length() + rowCount * (rowPlaceholder.length() + 2));
+        sql.append(insertPrefix);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(rowPlaceholder);
+        }
+        return sql.toString();
+    }
+}
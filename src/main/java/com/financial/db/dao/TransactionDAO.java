@@ -1,7 +1,16 @@
 package com.financial.db.dao;
 
 import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.mapping.TransactionFlyweight;
+import com.financial.db.mapping.TransactionMapper;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.Money;
 import com.financial.db.model.Transaction;
+import com.financial.db.model.TransactionPage;
+import com.financial.db.model.TransactionView;
+import com.financial.db.util.CursorStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,18 +21,73 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class TransactionDAO extends FinancialDatabaseManager {
     private static final Logger logger = LoggerFactory.getLogger(TransactionDAO.class);
 
+    private static final OperationMetrics CREATE_TRANSACTION = DbMetrics.operation("TransactionDAO.createTransaction");
+    private static final OperationMetrics CREATE_TRANSACTIONS = DbMetrics.operation("TransactionDAO.createTransactions");
+    private static final OperationMetrics BY_ACCOUNT = DbMetrics.operation("TransactionDAO.getTransactionsByAccount");
+    private static final OperationMetrics STREAM_BY_ACCOUNT = DbMetrics.operation("TransactionDAO.streamTransactionsByAccount");
+    private static final OperationMetrics PAGE = DbMetrics.operation("TransactionDAO.getTransactionsPage");
+    private static final OperationMetrics SCAN_BY_ACCOUNT = DbMetrics.operation("TransactionDAO.scanTransactionsByAccount");
+    private static final OperationMetrics SUM_AMOUNTS = DbMetrics.operation("TransactionDAO.sumAmounts");
+
+    private static final String TRANSACTIONS_BY_ACCOUNT_SQL =
+        "SELECT * FROM transactions WHERE account_number = ? ORDER BY timestamp DESC, id DESC";
+
+    // Bounds on the partition key let the planner skip partitions outside the range
+    private static final String TRANSACTIONS_BY_ACCOUNT_BETWEEN_SQL =
+        "SELECT * FROM transactions WHERE account_number = ? AND timestamp >= ? AND timestamp < ? " +
+        "ORDER BY timestamp DESC, id DESC";
+
+    // Amounts arrive as BIGINT minor units, so scanning them creates no BigDecimal per row
+    private static final String SCAN_BY_ACCOUNT_SQL =
+        "SELECT id, account_number, " + Money.minorUnits("amount") + " AS amount_minor, type, timestamp, description " +
+        "FROM transactions WHERE account_number = ? ORDER BY timestamp DESC, id DESC";
+
+    private static final String AMOUNTS_BY_ACCOUNT_SQL =
+        "SELECT " + Money.minorUnits("amount") + " FROM transactions WHERE account_number = ?";
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final String FIRST_PAGE_SQL =
+        "SELECT * FROM transactions WHERE account_number = ? " +
+        "ORDER BY timestamp DESC, id DESC LIMIT ?";
+
+    // Row-value comparison lets the (account_number, timestamp DESC, id DESC) index seek straight to the cursor;
+    // the plain timestamp bound, which the row comparison implies, lets the planner skip newer partitions
+    private static final String NEXT_PAGE_SQL =
+        "SELECT * FROM transactions WHERE account_number = ? AND timestamp <= ? AND (timestamp, id) < (?, ?) " +
+        "ORDER BY timestamp DESC, id DESC LIMIT ?";
+
+    private static final MultiRowInsert<Transaction> BATCH_INSERT = new MultiRowInsert<>(
+        "transactions",
+        new String[] { "account_number", "amount", "type", "description", "timestamp" },
+        (stmt, i, transaction) -> {
+            stmt.setString(i, transaction.getAccountNumber());
+            stmt.setBigDecimal(i + 1, transaction.getAmount());
+            stmt.setString(i + 2, transaction.getType().name());
+            stmt.setString(i + 3, transaction.getDescription());
+            stmt.setTimestamp(i + 4, Timestamp.valueOf(
+                transaction.getTimestamp() != null ? transaction.getTimestamp() : LocalDateTime.now()));
+        },
+        Transaction::setId);
+
     public TransactionDAO() {
         super();
     }
 
     public void createTransaction(Transaction transaction) throws SQLException {
         String sql = "INSERT INTO transactions (account_number, amount, type, description, timestamp) VALUES (?, ?, ?, ?, ?)";
-        try (Connection connection = getConnection();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CREATE_TRANSACTION, transaction.getAccountNumber());
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             
             stmt.setString(1, transaction.getAccountNumber());
@@ -31,40 +95,315 @@ public class TransactionDAO extends FinancialDatabaseManager {
             stmt.setString(3, transaction.getType().name());
             stmt.setString(4, transaction.getDescription());
             stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.executeUpdate();
+            rows = stmt.executeUpdate();
         } catch (SQLException e) {
             logger.error("Error creating transaction", e);
             throw e;
+        } finally {
+            CREATE_TRANSACTION.record(start, rows);
+        }
+    }
+
+    /**
+     * Insert transactions in multi-row chunks of {@value MultiRowInsert#DEFAULT_CHUNK_SIZE}, committing once per chunk
+     * @param transactions Transactions to insert; generated ids are set on them
+     * @return Generated ids and the rows that failed
+     */
+    public BatchResult createTransactions(Collection<Transaction> transactions) throws SQLException {
+        return createTransactions(transactions, MultiRowInsert.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Insert transactions in multi-row chunks, committing once per chunk. With
+     * shards each shard gets its own chunks.
+     * @param transactions Transactions to insert; generated ids are set on them
+     * @param chunkSize Rows per statement and per commit
+     * @return Generated ids and the rows that failed
+     */
+    public BatchResult createTransactions(Collection<Transaction> transactions, int chunkSize) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            BatchResult result = insert(transactions, chunkSize);
+            if (result.hasFailures()) {
+                logger.warn("Batch transaction insert: {}", result);
+            }
+            rows = transactions.size() - result.getFailures().size();
+            return result;
+        } catch (SQLException e) {
+            logger.error("Error creating transactions", e);
+            throw e;
+        } finally {
+            CREATE_TRANSACTIONS.record(start, rows);
+        }
+    }
+
+    private BatchResult insert(Collection<Transaction> transactions, int chunkSize) throws SQLException {
+        if (getShards() != null) {
+            return BATCH_INSERT.execute(getShards(), Transaction::getAccountNumber, transactions, chunkSize);
+        }
+        try (Connection connection = getConnection(CREATE_TRANSACTIONS)) {
+            return BATCH_INSERT.execute(connection, transactions, chunkSize);
         }
     }
 
     public List<Transaction> getTransactionsByAccount(String accountNumber) throws SQLException {
-        String sql = "SELECT * FROM transactions WHERE account_number = ? ORDER BY timestamp DESC";
+        return getTransactionsByAccount(accountNumber, TRANSACTIONS_BY_ACCOUNT_SQL,
+            stmt -> stmt.setString(1, accountNumber));
+    }
+
+    /**
+     * Transactions for an account within a time range, newest first. Only the
+     * partitions overlapping the range are read.
+     * @param accountNumber Account number
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @return Transactions in the range
+     */
+    public List<Transaction> getTransactionsByAccount(String accountNumber, LocalDateTime from,
+                                                      LocalDateTime to) throws SQLException {
+        return getTransactionsByAccount(accountNumber, TRANSACTIONS_BY_ACCOUNT_BETWEEN_SQL,
+            between(accountNumber, from, to));
+    }
+
+    private List<Transaction> getTransactionsByAccount(String accountNumber, String sql,
+                                                       CursorStream.StatementBinder binder) throws SQLException {
         List<Transaction> transactions = new ArrayList<>();
         
-        try (Connection connection = getConnection();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(BY_ACCOUNT, accountNumber, Priority.READ);
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             
-            stmt.setString(1, accountNumber);
+            binder.bind(stmt);
             ResultSet rs = stmt.executeQuery();
+            TransactionMapper mapper = new TransactionMapper();
             
             while (rs.next()) {
-                Transaction transaction = new Transaction();
-                transaction.setId(rs.getLong("id"));
-                transaction.setAccountNumber(rs.getString("account_number"));
-                transaction.setAmount(rs.getBigDecimal("amount"));
-                transaction.setType(Transaction.TransactionType.valueOf(rs.getString("type")));
-                transaction.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
-                transaction.setDescription(rs.getString("description"));
-                
-                transactions.add(transaction);
+                transactions.add(mapper.read(rs));
             }
+            rows = transactions.size();
             
         } catch (SQLException e) {
             logger.error("Failed to fetch transactions", e);
             throw new RuntimeException("Failed to fetch transactions", e);
+        } finally {
+            BY_ACCOUNT.record(start, rows);
         }
         
         return transactions;
     }
+
+    /**
+     * Streaming variant of {@link #getTransactionsByAccount(String)} backed by a server-side cursor
+     * @param accountNumber Account number
+     * @param fetchSize Rows fetched per round trip
+     * @return Stream of transactions, newest first; close it to release the connection
+     */
+    public Stream<Transaction> streamTransactionsByAccount(String accountNumber, int fetchSize) throws SQLException {
+        return streamTransactionsByAccount(accountNumber, TRANSACTIONS_BY_ACCOUNT_SQL, fetchSize,
+            stmt -> stmt.setString(1, accountNumber));
+    }
+
+    /**
+     * Streaming variant of {@link #getTransactionsByAccount(String, LocalDateTime, LocalDateTime)}
+     * @param accountNumber Account number
+     * @param from Earliest timestamp, inclusive
+     * @param to Latest timestamp, exclusive
+     * @param fetchSize Rows fetched per round trip
+     * @return Stream of transactions, newest first; close it to release the connection
+     */
+    public Stream<Transaction> streamTransactionsByAccount(String accountNumber, LocalDateTime from, LocalDateTime to,
+                                                           int fetchSize) throws SQLException {
+        return streamTransactionsByAccount(accountNumber, TRANSACTIONS_BY_ACCOUNT_BETWEEN_SQL, fetchSize,
+            between(accountNumber, from, to));
+    }
+
+    private Stream<Transaction> streamTransactionsByAccount(String accountNumber, String sql, int fetchSize,
+                                                            CursorStream.StatementBinder binder) throws SQLException {
+        // Times opening the cursor; rows are pulled later at the caller's pace
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            Stream<Transaction> stream = CursorStream.open(getConnection(STREAM_BY_ACCOUNT, accountNumber, Priority.REPORT), sql,
+                fetchSize, binder, new TransactionMapper());
+            rows = 0;
+            return stream;
+        } catch (SQLException e) {
+            logger.error("Failed to fetch transactions", e);
+            throw e;
+        } finally {
+            STREAM_BY_ACCOUNT.record(start, rows);
+        }
+    }
+
+    /**
+     * Callback variant of {@link #streamTransactionsByAccount(String, int)}
+     * @param accountNumber Account number
+     * @param fetchSize Rows fetched per round trip
+     * @param action Invoked once per transaction, newest first
+     */
+    public void forEachTransactionByAccount(String accountNumber, int fetchSize,
+                                            Consumer<Transaction> action) throws SQLException {
+        try (Stream<Transaction> transactions = streamTransactionsByAccount(accountNumber, fetchSize)) {
+            transactions.forEachOrdered(action);
+        }
+    }
+
+    /**
+     * Immutable-row variant of {@link #streamTransactionsByAccount(String, int)}
+     * @param accountNumber Account number
+     * @param fetchSize Rows fetched per round trip
+     * @return Stream of transactions, newest first; close it to release the connection
+     */
+    public Stream<TransactionView> streamTransactionViews(String accountNumber, int fetchSize) throws SQLException {
+        // Times opening the cursor; rows are pulled later at the caller's pace
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try {
+            TransactionMapper mapper = new TransactionMapper();
+            Stream<TransactionView> stream = CursorStream.open(getConnection(STREAM_BY_ACCOUNT, accountNumber, Priority.REPORT),
+                TRANSACTIONS_BY_ACCOUNT_SQL, fetchSize, stmt -> stmt.setString(1, accountNumber), mapper::readView);
+            rows = 0;
+            return stream;
+        } catch (SQLException e) {
+            logger.error("Failed to fetch transactions", e);
+            throw e;
+        } finally {
+            STREAM_BY_ACCOUNT.record(start, rows);
+        }
+    }
+
+    /**
+     * Scan an account's transactions through a server-side cursor, decoding
+     * every row into the same {@link TransactionFlyweight}. The flyweight is
+     * overwritten by the next row, so the action must copy anything it keeps.
+     * @param accountNumber Account number
+     * @param fetchSize Rows fetched per round trip
+     * @param action Invoked once per transaction, newest first
+     * @return Number of transactions scanned
+     */
+    public long scanTransactionsByAccount(String accountNumber, int fetchSize,
+                                          Consumer<TransactionFlyweight> action) throws SQLException {
+        TransactionMapper mapper = new TransactionMapper();
+        TransactionFlyweight row = new TransactionFlyweight();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Stream<TransactionFlyweight> transactions = CursorStream.open(getConnection(SCAN_BY_ACCOUNT, accountNumber, Priority.REPORT),
+                SCAN_BY_ACCOUNT_SQL, fetchSize, stmt -> stmt.setString(1, accountNumber),
+                rs -> mapper.readInto(rs, row))) {
+            long count = 0;
+            Iterator<TransactionFlyweight> it = transactions.iterator();
+            while (it.hasNext()) {
+                action.accept(it.next());
+                count++;
+            }
+            rows = count;
+            return count;
+        } catch (SQLException e) {
+            logger.error("Failed to scan transactions", e);
+            throw e;
+        } finally {
+            SCAN_BY_ACCOUNT.record(start, rows);
+        }
+    }
+
+    /**
+     * Add up an account's transaction amounts in process, reading them through
+     * a server-side cursor as {@link Money} minor units. Nothing is allocated
+     * per row on this side of the driver.
+     * @param accountNumber Account number
+     * @param fetchSize Rows fetched per round trip
+     * @return Sum of the amounts in minor units
+     * @throws ArithmeticException if the sum overflows a long
+     */
+    public long sumAmounts(String accountNumber, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(SUM_AMOUNTS, accountNumber, Priority.REPORT)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(AMOUNTS_BY_ACCOUNT_SQL)) {
+                stmt.setFetchSize(fetchSize);
+                stmt.setString(1, accountNumber);
+                long total = 0;
+                long count = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        total = Money.add(total, rs.getLong(1));
+                        count++;
+                    }
+                }
+                rows = count;
+                return total;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to sum transaction amounts", e);
+            throw e;
+        } finally {
+            SUM_AMOUNTS.record(start, rows);
+        }
+    }
+
+    private static CursorStream.StatementBinder between(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Empty time range: " + from + " to " + to);
+        }
+        return stmt -> {
+            stmt.setString(1, accountNumber);
+            stmt.setTimestamp(2, Timestamp.valueOf(from));
+            stmt.setTimestamp(3, Timestamp.valueOf(to));
+        };
+    }
+
+    /**
+     * Keyset-paginated transactions for an account, newest first
+     * @param accountNumber Account number
+     * @param pageSize Maximum transactions per page, up to {@value #MAX_PAGE_SIZE}
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @return Page of transactions and the cursor for the next page
+     */
+    public TransactionPage getTransactionsPage(String accountNumber, int pageSize, String cursor) throws SQLException {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE + ": " + pageSize);
+        }
+        PageCursor after = cursor != null ? PageCursor.decode(cursor) : null;
+
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(PAGE, accountNumber, Priority.READ);
+             PreparedStatement stmt = connection.prepareStatement(after == null ? FIRST_PAGE_SQL : NEXT_PAGE_SQL)) {
+
+            int index = 1;
+            stmt.setString(index++, accountNumber);
+            if (after != null) {
+                stmt.setTimestamp(index++, Timestamp.valueOf(after.getTimestamp()));
+                stmt.setTimestamp(index++, Timestamp.valueOf(after.getTimestamp()));
+                stmt.setLong(index++, after.getId());
+            }
+            // Fetch one extra row to learn whether another page follows
+            stmt.setInt(index, pageSize + 1);
+
+            List<Transaction> transactions = new ArrayList<>(pageSize + 1);
+            try (ResultSet rs = stmt.executeQuery()) {
+                TransactionMapper mapper = new TransactionMapper();
+                while (rs.next()) {
+                    transactions.add(mapper.read(rs));
+                }
+            }
+
+            String nextCursor = null;
+            if (transactions.size() > pageSize) {
+                transactions.remove(pageSize);
+                Transaction last = transactions.get(pageSize - 1);
+                nextCursor = new PageCursor(last.getTimestamp(), last.getId()).encode();
+            }
+            rows = transactions.size();
+            return new TransactionPage(transactions, nextCursor);
+        } catch (SQLException e) {
+            logger.error("Failed to fetch transactions page", e);
+            throw e;
+        } finally {
+            PAGE.record(start, rows);
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package com.financial.db.feed;
+
+import com.financial.db.model.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * An account created or its balance changed
+ * @param balanceMinorUnits New balance in {@link Money} minor units
+ */
+public record BalanceEvent(String accountNumber, long balanceMinorUnits) {
+    public BigDecimal getBalance() {
+        return Money.toBigDecimal(balanceMinorUnits);
+    }
+}
@@ -0,0 +1,480 @@
+package com.financial.db.feed;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.cache.AccountCache;
+import com.financial.db.mapping.EnumLookup;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction.TransactionType;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.PoolConfig;
+import com.financial.db.util.EpochMicros;
+import com.financial.db.util.Env;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes ledger changes to subscribers as they commit, from the
+ * notifications the init-db.sql triggers send on the ledger_changes channel.
+ *
+ * One dedicated connection, outside the pool, listens for notifications and
+ * decodes them. Each subscription has a bounded queue drained by its own
+ * thread, so a slow subscriber never holds up the listener or the others.
+ * When a queue overflows, or the listener has to reconnect, the affected
+ * subscriptions drop what is queued, are told to reset and replay missed
+ * transactions from the table by id. Statements inserting many rows at once
+ * are announced as an id range, and every subscription reads exactly that
+ * range from the table, however far its own deliveries have got.
+ *
+ * Ids are handed out before commit, so a transaction committed after a
+ * higher id was already delivered is missed by a replay after a reset.
+ */
+public class ChangeFeed extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private static final OperationMetrics CATCH_UP = DbMetrics.operation("ChangeFeed.catchUp");
+
+    /**
+     * Channel the triggers notify on
+     */
+    public static final String CHANNEL = "ledger_changes";
+
+    /**
+     * Subscribe from now on and never replay transactions, e.g. for cache invalidation
+     */
+    public static final long NO_REPLAY = -1;
+
+    private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM transactions";
+    private static final String CATCH_UP_SQL =
+        "SELECT id, account_number, type, " + Money.minorUnits("amount") + ", timestamp " +
+        "FROM transactions WHERE id > ? AND id <= ? ORDER BY id LIMIT ?";
+
+    private static final EnumLookup<TransactionType> TYPES = EnumLookup.of(TransactionType.class);
+    private static final int CATCH_UP_PAGE_SIZE = 1000;
+    private static final int POLL_MILLIS = 500;
+    private static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+    // Queue marker; compared by identity
+    private static final Object RESET = new Object();
+
+    private static ChangeFeed defaultFeed;
+    private static boolean defaultResolved;
+
+    private final PoolConfig config;
+    private final int queueSize;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder notifications = new LongAdder();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private Thread listener;
+
+    /**
+     * @param pool Pool for replay queries; the listener connects with its settings
+     * @param queueSize Events each subscription may have waiting before it overflows
+     */
+    public ChangeFeed(ConnectionPool pool, int queueSize) {
+        super(pool);
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+        }
+        this.config = pool.getConfig();
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Process-wide feed on the default pool that keeps the default account
+     * cache in step with other instances. Enabled by CHANGE_FEED_ENABLED=true;
+     * CHANGE_FEED_QUEUE_SIZE (default 10000) bounds each subscription's queue.
+     * @return Shared, started feed, or null if not enabled
+     */
+    public static synchronized ChangeFeed getDefault() {
+        if (!defaultResolved) {
+            if (Boolean.parseBoolean(Env.getString("CHANGE_FEED_ENABLED", "false"))) {
+                ChangeFeed feed = new ChangeFeed(ConnectionPool.getDefault(), Env.getInt("CHANGE_FEED_QUEUE_SIZE", 10_000));
+                feed.start();
+                feed.invalidate(AccountCache.getDefault());
+                Runtime.getRuntime().addShutdownHook(new Thread(feed::stop, "change-feed-shutdown"));
+                defaultFeed = feed;
+            }
+            defaultResolved = true;
+        }
+        return defaultFeed;
+    }
+
+    /**
+     * Start listening in the background
+     */
+    public synchronized void start() {
+        if (listener != null) {
+            throw new IllegalStateException("Change feed already started");
+        }
+        running = true;
+        listener = new Thread(this::listen, "change-feed-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * Receive changes committed from now on
+     * @param changeListener Listener to call
+     * @return Subscription; close it to stop receiving
+     */
+    public Subscription subscribe(ChangeListener changeListener) throws SQLException {
+        return subscribe(changeListener, currentMaxId());
+    }
+
+    /**
+     * Replay the transactions after an id, then receive changes as they commit
+     * @param changeListener Listener to call
+     * @param afterId Last transaction id already seen, or {@link #NO_REPLAY}
+     * @return Subscription; close it to stop receiving
+     */
+    public Subscription subscribe(ChangeListener changeListener, long afterId) {
+        Subscription subscription = new Subscription(changeListener, afterId);
+        subscriptions.add(subscription);
+        subscription.start();
+        return subscription;
+    }
+
+    /**
+     * Invalidate cached accounts whenever their balance changes anywhere.
+     * Deposits to hot accounts leave the account row alone, so every posting
+     * invalidates its account as well.
+     * @param cache Cache to keep current
+     * @return Subscription; close it to stop invalidating
+     */
+    public Subscription invalidate(AccountCache cache) {
+        return subscribe(new ChangeListener() {
+            @Override
+            public void onTransaction(TransactionEvent event) {
+                cache.invalidate(event.accountNumber());
+            }
+
+            @Override
+            public void onBalanceChange(BalanceEvent event) {
+                cache.invalidate(event.accountNumber());
+            }
+
+            @Override
+            public void onReset() {
+                cache.invalidateAll();
+            }
+        }, NO_REPLAY);
+    }
+
+    /**
+     * @return Whether the listener connection is currently up
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @return Notifications received since the feed started
+     */
+    public long getNotificationCount() {
+        return notifications.sum();
+    }
+
+    /**
+     * Stop listening and end every subscription
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = listener;
+            listener = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        super.close();
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                connected = true;
+                if (reconnecting) {
+                    // Whatever was sent while we were away is lost
+                    logger.info("Change feed reconnected");
+                    broadcast(RESET);
+                }
+                while (running) {
+                    PGNotification[] received = pgConnection.getNotifications(POLL_MILLIS);
+                    if (received == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : received) {
+                        notifications.increment();
+                        dispatch(notification.getParameter());
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                connected = false;
+                if (!running) {
+                    return;
+                }
+                logger.warn("Change feed connection lost; reconnecting", e);
+                reconnecting = true;
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+        connected = false;
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        if (config.getUser() != null) {
+            properties.setProperty("user", config.getUser());
+        }
+        if (config.getPassword() != null) {
+            properties.setProperty("password", config.getPassword());
+        }
+        return DriverManager.getConnection(config.getUrl(), properties);
+    }
+
+    private void dispatch(String payload) {
+        Object event;
+        try {
+            event = decode(payload);
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring malformed change notification: {}", payload, e);
+            return;
+        }
+        broadcast(event);
+    }
+
+    private void broadcast(Object event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    private static Object decode(String payload) {
+        String[] fields;
+        switch (payload.charAt(0)) {
+            case 'T':
+                fields = payload.split("\\|", 6);
+                return new TransactionEvent(Long.parseLong(fields[1]), fields[5], TYPES.lookup(fields[2]),
+                    Money.parse(fields[3]), EpochMicros.fromMicros(Long.parseLong(fields[4])));
+            case 'A':
+                fields = payload.split("\\|", 3);
+                return new BalanceEvent(fields[2], Money.parse(fields[1]));
+            case 'R':
+                fields = payload.split("\\|", 3);
+                return new IdRange(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+            default:
+                throw new IllegalArgumentException("Unknown change type");
+        }
+    }
+
+    private long currentMaxId() throws SQLException {
+        try (Connection connection = getConnection(CATCH_UP, Priority.REPORT);
+             PreparedStatement stmt = connection.prepareStatement(MAX_ID_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Ids inserted by one statement, announced instead of the rows themselves
+     */
+    private record IdRange(long firstId, long lastId) {
+    }
+
+    /**
+     * A listener with its own queue and delivery thread
+     */
+    public final class Subscription implements AutoCloseable {
+        private final ChangeListener changeListener;
+        private final boolean replay;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+        private final Thread thread;
+        private final LongAdder overflows = new LongAdder();
+        private volatile boolean open = true;
+        private volatile boolean overflowed;
+        private volatile long lastId;
+        private IdRange pendingRange;
+
+        private Subscription(ChangeListener changeListener, long afterId) {
+            this.changeListener = changeListener;
+            this.replay = afterId != NO_REPLAY;
+            this.lastId = Math.max(afterId, 0);
+            this.thread = new Thread(this::run, "change-feed-subscriber");
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * @return Highest transaction id delivered so far
+         */
+        public long getLastTransactionId() {
+            return lastId;
+        }
+
+        /**
+         * @return Times the queue overflowed and the subscription had to reset
+         */
+        public long getOverflowCount() {
+            return overflows.sum();
+        }
+
+        /**
+         * @return Events waiting to be delivered
+         */
+        public int getBacklog() {
+            return queue.size();
+        }
+
+        @Override
+        public void close() {
+            open = false;
+            subscriptions.remove(this);
+            thread.interrupt();
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void offer(Object event) {
+            if (!queue.offer(event) && !overflowed) {
+                overflows.increment();
+                overflowed = true;
+            }
+        }
+
+        private void run() {
+            // Replay anything committed between afterId and the subscription starting
+            boolean catchUpPending = true;
+            while (open) {
+                try {
+                    if (overflowed) {
+                        overflowed = false;
+                        queue.clear();
+                        logger.warn("Change feed subscriber fell behind; resetting");
+                        changeListener.onReset();
+                        catchUpPending = true;
+                    }
+                    if (catchUpPending) {
+                        if (replay) {
+                            catchUp(lastId, Long.MAX_VALUE);
+                        }
+                        catchUpPending = false;
+                    }
+                    if (pendingRange != null) {
+                        // Read regardless of lastId: a bulk statement may commit after higher ids were delivered
+                        catchUp(pendingRange.firstId() - 1, pendingRange.lastId());
+                        pendingRange = null;
+                    }
+                    Object event = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (event == RESET) {
+                        changeListener.onReset();
+                        catchUpPending = true;
+                    } else if (event instanceof IdRange) {
+                        pendingRange = (IdRange) event;
+                    } else if (event instanceof TransactionEvent) {
+                        deliver((TransactionEvent) event);
+                    } else if (event instanceof BalanceEvent) {
+                        changeListener.onBalanceChange((BalanceEvent) event);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (SQLException e) {
+                    logger.warn("Change feed replay failed; will retry", e);
+                    catchUpPending = true;
+                    pause();
+                } catch (RuntimeException e) {
+                    logger.warn("Change listener failed", e);
+                }
+            }
+        }
+
+        /**
+         * Deliver the transactions with ids after {@code afterId} up to {@code throughId}, in id order
+         */
+        private void catchUp(long afterId, long throughId) throws SQLException {
+            long start = System.nanoTime();
+            long rows = OperationMetrics.FAILED;
+            try (Connection connection = getConnection(CATCH_UP, Priority.REPORT);
+                 PreparedStatement stmt = connection.prepareStatement(CATCH_UP_SQL)) {
+                long replayed = 0;
+                long after = afterId;
+                int page;
+                do {
+                    stmt.setLong(1, after);
+                    stmt.setLong(2, throughId);
+                    stmt.setInt(3, CATCH_UP_PAGE_SIZE);
+                    page = 0;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next() && open) {
+                            TransactionEvent event = new TransactionEvent(rs.getLong(1), rs.getString(2),
+                                TYPES.lookup(rs.getString(3)), rs.getLong(4), rs.getTimestamp(5).toLocalDateTime());
+                            deliver(event);
+                            after = event.id();
+                            page++;
+                        }
+                    }
+                    replayed += page;
+                } while (page == CATCH_UP_PAGE_SIZE && open);
+                rows = replayed;
+            } finally {
+                CATCH_UP.record(start, rows);
+            }
+        }
+
+        private void deliver(TransactionEvent event) {
+            try {
+                changeListener.onTransaction(event);
+            } catch (RuntimeException e) {
+                logger.warn("Change listener failed on transaction {}", event.id(), e);
+            }
+            lastId = Math.max(lastId, event.id());
+        }
+
+        private void pause() {
+            try {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.financial.db.feed;
+
+/**
+ * Receives ledger changes from a {@link ChangeFeed} subscription, on the
+ * subscription's own thread and in notification order. Delivery is at least
+ * once: after {@link #onReset()} transactions already delivered may be
+ * delivered again, so use their ids to skip repeats.
+ */
+public interface ChangeListener {
+
+    default void onTransaction(TransactionEvent event) {
+    }
+
+    default void onBalanceChange(BalanceEvent event) {
+    }
+
+    /**
+     * Notifications were lost, because the listener fell too far behind or
+     * the feed reconnected; balances learned from earlier events may be
+     * stale. Missed transactions are replayed straight after this call,
+     * unless the subscription was made with {@link ChangeFeed#NO_REPLAY}.
+     */
+    default void onReset() {
+    }
+}
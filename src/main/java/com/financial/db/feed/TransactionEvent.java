@@ -0,0 +1,18 @@
+package com.financial.db.feed;
+
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A transaction inserted into the ledger
+ * @param amountMinorUnits Amount in {@link Money} minor units
+ */
+public record TransactionEvent(long id, String accountNumber, TransactionType type, long amountMinorUnits,
+                               LocalDateTime timestamp) {
+    public BigDecimal getAmount() {
+        return Money.toBigDecimal(amountMinorUnits);
+    }
+}
@@ -0,0 +1,182 @@
+package com.financial.db.load;
+
+import com.financial.db.util.Env;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings for a {@link LoadGenerator} run. {@link #fromEnv()} reads the
+ * LOAD_* variables.
+ */
+public class LoadConfig {
+    /**
+     * Default operation mix: mostly postings, some lookups, a few reports
+     */
+    public static final String DEFAULT_MIX = "deposit=40,withdraw=25,transfer=20,lookup=10,report=5";
+
+    private int accounts = 10_000;
+    private long seedTransactions = 100_000;
+    private boolean seedData = true;
+    private int threads = 16;
+    private long targetRate;
+    private long warmupSeconds = 10;
+    private long durationSeconds = 60;
+    private double zipfExponent = 1.0;
+    private long randomSeed = 42;
+    private Map<LoadOperation, Integer> mix = parseMix(DEFAULT_MIX);
+
+    /**
+     * Build a configuration from environment variables
+     * @return Load configuration
+     */
+    public static LoadConfig fromEnv() {
+        LoadConfig config = new LoadConfig();
+        config.setAccounts(Env.getInt("LOAD_ACCOUNTS", config.getAccounts()));
+        config.setSeedTransactions(Env.getLong("LOAD_SEED_TRANSACTIONS", config.getSeedTransactions()));
+        config.setSeedData(Boolean.parseBoolean(Env.getString("LOAD_SEED_DATA", String.valueOf(config.isSeedData()))));
+        config.setThreads(Env.getInt("LOAD_THREADS", config.getThreads()));
+        config.setTargetRate(Env.getLong("LOAD_RATE", config.getTargetRate()));
+        config.setWarmupSeconds(Env.getLong("LOAD_WARMUP_S", config.getWarmupSeconds()));
+        config.setDurationSeconds(Env.getLong("LOAD_DURATION_S", config.getDurationSeconds()));
+        String exponent = Env.getString("LOAD_ZIPF_EXPONENT", String.valueOf(config.getZipfExponent()));
+        try {
+            config.setZipfExponent(Double.parseDouble(exponent.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Environment variable LOAD_ZIPF_EXPONENT is not a number: " + exponent, e);
+        }
+        config.setRandomSeed(Env.getLong("LOAD_RANDOM_SEED", config.getRandomSeed()));
+        config.setMix(parseMix(Env.getString("LOAD_MIX", DEFAULT_MIX)));
+        return config;
+    }
+
+    /**
+     * Parse an operation mix such as {@value #DEFAULT_MIX}. Weights are
+     * relative; operations left out are not sent.
+     * @param mix Comma-separated operation=weight pairs
+     * @return Weight per operation
+     */
+    public static Map<LoadOperation, Integer> parseMix(String mix) {
+        Map<LoadOperation, Integer> weights = new EnumMap<>(LoadOperation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix entry, expected operation=weight: " + entry);
+            }
+            LoadOperation operation;
+            int weight;
+            try {
+                operation = LoadOperation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+                weight = Integer.parseInt(parts[1].trim());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry, e);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weight must not be negative: " + entry);
+            }
+            weights.put(operation, weight);
+        }
+        return weights;
+    }
+
+    void validate() {
+        if (accounts < 2) {
+            throw new IllegalArgumentException("Need at least two accounts for transfers: " + accounts);
+        }
+        if (seedTransactions < 0 || targetRate < 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("Seed transactions, rate and warmup must not be negative");
+        }
+        if (threads < 1 || durationSeconds < 1) {
+            throw new IllegalArgumentException("Threads and duration must be positive");
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Operation mix has no positive weight: " + mix);
+        }
+    }
+
+    // Getters and Setters
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(int accounts) {
+        this.accounts = accounts;
+    }
+
+    public long getSeedTransactions() {
+        return seedTransactions;
+    }
+
+    public void setSeedTransactions(long seedTransactions) {
+        this.seedTransactions = seedTransactions;
+    }
+
+    public boolean isSeedData() {
+        return seedData;
+    }
+
+    public void setSeedData(boolean seedData) {
+        this.seedData = seedData;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return Operations per second across all threads, or 0 to send as fast as the threads can
+     */
+    public long getTargetRate() {
+        return targetRate;
+    }
+
+    public void setTargetRate(long targetRate) {
+        this.targetRate = targetRate;
+    }
+
+    public long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public void setWarmupSeconds(long warmupSeconds) {
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(long durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public double getZipfExponent() {
+        return zipfExponent;
+    }
+
+    public void setZipfExponent(double zipfExponent) {
+        this.zipfExponent = zipfExponent;
+    }
+
+    public long getRandomSeed() {
+        return randomSeed;
+    }
+
+    public void setRandomSeed(long randomSeed) {
+        this.randomSeed = randomSeed;
+    }
+
+    public Map<LoadOperation, Integer> getMix() {
+        return Collections.unmodifiableMap(mix);
+    }
+
+    public void setMix(Map<LoadOperation, Integer> mix) {
+        this.mix = new EnumMap<>(mix);
+    }
+}
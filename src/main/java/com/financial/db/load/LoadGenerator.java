@@ -0,0 +1,264 @@
+package com.financial.db.load;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.dao.AccountDAO;
+import com.financial.db.dao.BatchResult;
+import com.financial.db.dao.TransactionDAO;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.model.Account;
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction;
+import com.financial.db.pool.ReadConsistency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Repeatable synthetic workload for finding saturation points.
+ *
+ * {@link #seed()} creates the load test accounts, numbered LOAD00000000
+ * upwards, and a history of ledger rows spread over the past 30 days.
+ * {@link #run()} then sends a weighted mix of deposits, withdrawals,
+ * transfers, account lookups and balance reports from a fixed number of
+ * threads through the regular managers. Accounts are picked with a Zipf
+ * distribution over their numbers, so LOAD00000000 is the busiest.
+ *
+ * With a target rate, requests are scheduled at fixed intervals and each
+ * one's latency is measured from when it was due rather than when a thread
+ * got round to it, so a saturated system shows up as growing latency
+ * instead of silently sending less. Without one every thread sends
+ * back to back. Results from the warmup period are discarded.
+ */
+public class LoadGenerator extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final int SEED_CHUNK_SIZE = 10_000;
+    private static final BigDecimal SEED_BALANCE = new BigDecimal("1000000.00");
+    private static final long SEED_HISTORY_SECONDS = TimeUnit.DAYS.toSeconds(30);
+    // Amounts between 1.00 and 100.00
+    private static final long MIN_AMOUNT_MINOR_UNITS = 100;
+    private static final long MAX_AMOUNT_MINOR_UNITS = 10_000;
+    private static final String DESCRIPTION = "Load test";
+
+    private final LoadConfig config;
+    private final ZipfSampler sampler;
+    private final String[] accountNumbers;
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private final AccountDAO accountDAO = new AccountDAO();
+    private final TransactionDAO transactionDAO = new TransactionDAO();
+
+    // Swapped for a fresh registry when the warmup ends
+    private volatile Map<LoadOperation, OperationMetrics> metrics;
+
+    public LoadGenerator(LoadConfig config) {
+        super();
+        config.validate();
+        this.config = config;
+        this.sampler = new ZipfSampler(config.getAccounts(), config.getZipfExponent());
+        this.accountNumbers = new String[config.getAccounts()];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            accountNumbers[i] = accountNumber(i);
+        }
+
+        List<LoadOperation> weighted = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<LoadOperation, Integer> entry : config.getMix().entrySet()) {
+            if (entry.getValue() > 0) {
+                total += entry.getValue();
+                weighted.add(entry.getKey());
+                cumulative.add(total);
+            }
+        }
+        this.operations = weighted.toArray(new LoadOperation[0]);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param index Account index, 0 for the most popular
+     * @return Number of the load test account
+     */
+    public static String accountNumber(int index) {
+        return String.format("LOAD%08d", index);
+    }
+
+    /**
+     * Create the load test accounts and the seed ledger history. Accounts
+     * that already exist are kept as they are, so a database can be seeded
+     * once and reused across runs.
+     */
+    public void seed() throws SQLException {
+        int created = 0;
+        Account.AccountType[] types = Account.AccountType.values();
+        for (int from = 0; from < accountNumbers.length; from += SEED_CHUNK_SIZE) {
+            List<Account> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + SEED_CHUNK_SIZE, accountNumbers.length); i++) {
+                Account account = new Account(null, accountNumbers[i], SEED_BALANCE, "Load Test " + i);
+                account.setType(types[i % types.length]);
+                chunk.add(account);
+            }
+            BatchResult result = accountDAO.createAccounts(chunk);
+            created += result.getSuccessCount();
+        }
+        logger.info("Seeded {} of {} load test accounts", created, accountNumbers.length);
+
+        SplittableRandom random = new SplittableRandom(config.getRandomSeed());
+        LocalDateTime now = LocalDateTime.now();
+        long inserted = 0;
+        while (inserted < config.getSeedTransactions()) {
+            int size = (int) Math.min(SEED_CHUNK_SIZE, config.getSeedTransactions() - inserted);
+            List<Transaction> chunk = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                boolean deposit = random.nextBoolean();
+                BigDecimal amount = Money.toBigDecimal(amount(random));
+                chunk.add(new Transaction(null, accountNumbers[sampler.sample(random)],
+                    deposit ? amount : amount.negate(),
+                    deposit ? Transaction.TransactionType.DEPOSIT : Transaction.TransactionType.WITHDRAWAL,
+                    now.minusSeconds(random.nextLong(SEED_HISTORY_SECONDS)), DESCRIPTION));
+            }
+            inserted += transactionDAO.createTransactions(chunk).getSuccessCount();
+        }
+        logger.info("Seeded {} load test transactions", inserted);
+    }
+
+    /**
+     * Send the configured mix for the warmup and measured periods
+     * @return Metrics for the measured period
+     */
+    public LoadResult run() throws InterruptedException {
+        metrics = newMetrics(new DbMetrics(false));
+        long intervalNanos = config.getTargetRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / config.getTargetRate() : 0;
+        long begin = System.nanoTime();
+        long measureFrom = begin + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        AtomicLong nextSlot = new AtomicLong();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < config.getThreads(); i++) {
+            SplittableRandom random = new SplittableRandom(config.getRandomSeed() + i + 1);
+            Thread worker = new Thread(() -> drive(random, begin, end, intervalNanos, nextSlot), "load-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+        logger.info("Sending load from {} threads, {}, for {}s after {}s warmup", config.getThreads(),
+            intervalNanos > 0 ? config.getTargetRate() + " ops/s" : "unthrottled",
+            config.getDurationSeconds(), config.getWarmupSeconds());
+        workers.forEach(Thread::start);
+
+        DbMetrics measured = new DbMetrics(false);
+        sleepUntil(measureFrom);
+        metrics = newMetrics(measured);
+        long measuredStart = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new LoadResult(measured, System.nanoTime() - measuredStart);
+    }
+
+    private void drive(SplittableRandom random, long begin, long end, long intervalNanos, AtomicLong nextSlot) {
+        while (true) {
+            long due;
+            if (intervalNanos > 0) {
+                due = begin + nextSlot.getAndIncrement() * intervalNanos;
+                if (due >= end) {
+                    return;
+                }
+                sleepUntil(due);
+            } else {
+                due = System.nanoTime();
+                if (due >= end) {
+                    return;
+                }
+            }
+            LoadOperation operation = pickOperation(random);
+            OperationMetrics op = metrics.get(operation);
+            long rows = OperationMetrics.FAILED;
+            try {
+                rows = execute(operation, random);
+            } catch (SQLException | RuntimeException e) {
+                logger.debug("Load operation {} failed", operation, e);
+            } finally {
+                op.record(due, rows);
+            }
+        }
+    }
+
+    private long execute(LoadOperation operation, SplittableRandom random) throws SQLException {
+        switch (operation) {
+            case DEPOSIT:
+                depositMinorUnits(pickAccount(random), amount(random), DESCRIPTION);
+                return 1;
+            case WITHDRAW:
+                withdrawMinorUnits(pickAccount(random), amount(random), DESCRIPTION);
+                return 1;
+            case TRANSFER:
+                int from = sampler.sample(random);
+                int to = sampler.sample(random);
+                if (to == from) {
+                    to = (from + 1) % accountNumbers.length;
+                }
+                transfer(accountNumbers[from], accountNumbers[to], Money.toBigDecimal(amount(random)), DESCRIPTION);
+                return 2;
+            case LOOKUP:
+                return accountDAO.getAccountByNumber(pickAccount(random)) != null ? 1 : 0;
+            case REPORT:
+                return getAccountBalances(ReadConsistency.EVENTUAL).size();
+            default:
+                throw new IllegalStateException("Unknown operation: " + operation);
+        }
+    }
+
+    private LoadOperation pickOperation(SplittableRandom random) {
+        int target = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (target < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private String pickAccount(SplittableRandom random) {
+        return accountNumbers[sampler.sample(random)];
+    }
+
+    private static long amount(SplittableRandom random) {
+        return random.nextLong(MIN_AMOUNT_MINOR_UNITS, MAX_AMOUNT_MINOR_UNITS + 1);
+    }
+
+    private Map<LoadOperation, OperationMetrics> newMetrics(DbMetrics registry) {
+        Map<LoadOperation, OperationMetrics> byOperation = new EnumMap<>(LoadOperation.class);
+        for (LoadOperation operation : operations) {
+            byOperation.put(operation, registry.get("load." + operation.name().toLowerCase(Locale.ROOT)));
+        }
+        return byOperation;
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        accountDAO.close();
+        transactionDAO.close();
+        super.close();
+    }
+}
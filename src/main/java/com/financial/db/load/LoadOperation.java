@@ -0,0 +1,12 @@
+package com.financial.db.load;
+
+/**
+ * Kinds of request a {@link LoadGenerator} sends
+ */
+public enum LoadOperation {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    LOOKUP,
+    REPORT
+}
@@ -0,0 +1,52 @@
+package com.financial.db.load;
+
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a measured {@link LoadGenerator} run
+ * @param metrics Latency, success and error counts per operation, named {@code load.<operation>}
+ * @param elapsedNanos Length of the measured period
+ */
+public record LoadResult(DbMetrics metrics, long elapsedNanos) {
+    /**
+     * @return Successful operations per second across every operation
+     */
+    public double getThroughput() {
+        long successes = 0;
+        for (OperationMetrics op : metrics.getOperations()) {
+            successes += op.getSuccessCount();
+        }
+        return perSecond(successes);
+    }
+
+    public long getErrorCount() {
+        long errors = 0;
+        for (OperationMetrics op : metrics.getOperations()) {
+            errors += op.getErrorCount();
+        }
+        return errors;
+    }
+
+    /**
+     * Throughput per operation followed by the latency table; latencies in microseconds
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT, "%-48s %12s %12s%n",
+            "operation", "ok/s", "errors/s"));
+        for (OperationMetrics op : metrics.getOperations()) {
+            out.append(String.format(Locale.ROOT, "%-48s %12.1f %12.1f%n",
+                op.getName(), perSecond(op.getSuccessCount()), perSecond(op.getErrorCount())));
+        }
+        out.append(String.format(Locale.ROOT, "%-48s %12.1f %12.1f%n%n",
+            "total", getThroughput(), perSecond(getErrorCount())));
+        out.append(metrics.toText());
+        return out.toString();
+    }
+
+    private double perSecond(long count) {
+        return elapsedNanos > 0 ? count * 1e9 / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,52 @@
+package com.financial.db.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks 0 to n - 1 with probability proportional to 1 / (rank + 1)^s,
+ * so rank 0 is the most popular. An exponent of 0 is uniform; around 1 a
+ * few ranks take most of the draws, as with real account traffic.
+ *
+ * The cumulative distribution is computed once, 8 bytes per rank, and each
+ * draw is a binary search. Instances are immutable and can be shared
+ * between threads, each bringing its own random source.
+ */
+public final class ZipfSampler {
+    private final double[] cumulative;
+
+    /**
+     * @param n Number of ranks
+     * @param exponent Skew; 0 for uniform
+     */
+    public ZipfSampler(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Need at least one rank: " + n);
+        }
+        if (exponent < 0 || Double.isNaN(exponent)) {
+            throw new IllegalArgumentException("Exponent must not be negative: " + exponent);
+        }
+        cumulative = new double[n];
+        double total = 0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+    }
+
+    public int size() {
+        return cumulative.length;
+    }
+
+    /**
+     * @param random Random source of the calling thread
+     * @return Rank between 0 and {@link #size()} - 1
+     */
+    public int sample(SplittableRandom random) {
+        double target = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, target);
+        // A miss returns -(insertion point) - 1; the insertion point is the rank whose range holds the target
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,97 @@
+package com.financial.db.mapping;
+
+import com.financial.db.model.Account;
+import com.financial.db.model.AccountView;
+import com.financial.db.util.CursorStream;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Maps account rows by column position, resolved once per result set. A
+ * mapper keeps per-result-set state and must not be shared between threads.
+ */
+public final class AccountMapper implements CursorStream.RowReader<Account> {
+    private static final EnumLookup<Account.AccountType> TYPES = EnumLookup.of(Account.AccountType.class);
+
+    private final String idLabel;
+    private final boolean fullRow;
+    private ResultSet bound;
+    private int id;
+    private int accountNumber;
+    private int balance;
+    private int ownerName;
+    private int createdAt;
+    private int type;
+
+    public AccountMapper() {
+        this("id", true);
+    }
+
+    private AccountMapper(String idLabel, boolean fullRow) {
+        this.idLabel = idLabel;
+        this.fullRow = fullRow;
+    }
+
+    /**
+     * Mapper for joins that select only the id, number, balance and owner of
+     * an account; created_at and type are left unset
+     * @param idLabel Label the join gives the account id column
+     */
+    public static AccountMapper forJoin(String idLabel) {
+        return new AccountMapper(idLabel, false);
+    }
+
+    @Override
+    public Account read(ResultSet rs) throws SQLException {
+        bind(rs);
+        Account account = new Account(
+            rs.getLong(id),
+            rs.getString(accountNumber),
+            rs.getBigDecimal(balance),
+            rs.getString(ownerName)
+        );
+        if (createdAt != 0) {
+            account.setCreatedAt(rs.getObject(createdAt, LocalDateTime.class));
+        }
+        if (type != 0) {
+            account.setType(TYPES.lookup(rs.getString(type)));
+        }
+        return account;
+    }
+
+    public AccountView readView(ResultSet rs) throws SQLException {
+        bind(rs);
+        return new AccountView(
+            rs.getLong(id),
+            rs.getString(accountNumber),
+            rs.getBigDecimal(balance),
+            rs.getString(ownerName),
+            createdAt != 0 ? rs.getObject(createdAt, LocalDateTime.class) : null,
+            type != 0 ? TYPES.lookup(rs.getString(type)) : null
+        );
+    }
+
+    /**
+     * @return Id of the account on the current row, without mapping the rest of it
+     */
+    public long readId(ResultSet rs) throws SQLException {
+        bind(rs);
+        return rs.getLong(id);
+    }
+
+    private void bind(ResultSet rs) throws SQLException {
+        if (rs == bound) {
+            return;
+        }
+        int[] positions = ColumnIndex.resolve(rs, idLabel, "account_number", "balance", "owner_name", "created_at", "type");
+        id = ColumnIndex.require(positions[0], idLabel);
+        accountNumber = ColumnIndex.require(positions[1], "account_number");
+        balance = ColumnIndex.require(positions[2], "balance");
+        ownerName = ColumnIndex.require(positions[3], "owner_name");
+        createdAt = fullRow ? ColumnIndex.require(positions[4], "created_at") : 0;
+        type = fullRow ? ColumnIndex.require(positions[5], "type") : 0;
+        bound = rs;
+    }
+}
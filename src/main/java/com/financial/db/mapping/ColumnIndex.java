@@ -0,0 +1,41 @@
+package com.financial.db.mapping;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * Resolves column labels to positions once per result set.
+ */
+final class ColumnIndex {
+
+    private ColumnIndex() {
+    }
+
+    /**
+     * @param rs Result set to inspect
+     * @param labels Column labels, matched case-insensitively
+     * @return Position of each label, or 0 where the result set has no such column
+     */
+    static int[] resolve(ResultSet rs, String... labels) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int[] positions = new int[labels.length];
+        for (int column = metaData.getColumnCount(); column >= 1; column--) {
+            // Walk backwards so the first of any duplicate labels wins, as with findColumn
+            String label = metaData.getColumnLabel(column);
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].equalsIgnoreCase(label)) {
+                    positions[i] = column;
+                }
+            }
+        }
+        return positions;
+    }
+
+    static int require(int position, String label) throws SQLException {
+        if (position == 0) {
+            throw new SQLException("Result set has no column " + label);
+        }
+        return position;
+    }
+}
@@ -0,0 +1,66 @@
+package com.financial.db.mapping;
+
+import java.util.Arrays;
+
+/**
+ * Decodes enum names read from the database without going through
+ * {@link Enum#valueOf}, which hashes the whole string and builds an
+ * exception message for unknown names.
+ *
+ * Constants sit in a small open-addressed table keyed by the name's length
+ * and its first and last characters, so a lookup is a couple of char reads
+ * and one {@code equals} against the candidate.
+ */
+public final class EnumLookup<E extends Enum<E>> {
+    private final Class<E> type;
+    private final E[] table;
+    private final int mask;
+
+    private EnumLookup(Class<E> type) {
+        E[] constants = type.getEnumConstants();
+        int size = Integer.highestOneBit(Math.max(constants.length, 1) * 4 - 1) << 1;
+        this.type = type;
+        this.table = Arrays.copyOf(constants, size);
+        Arrays.fill(table, null);
+        this.mask = size - 1;
+        for (E constant : constants) {
+            int slot = slotOf(constant.name());
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = constant;
+        }
+    }
+
+    public static <E extends Enum<E>> EnumLookup<E> of(Class<E> type) {
+        return new EnumLookup<>(type);
+    }
+
+    /**
+     * @param name Constant name, or null
+     * @return Matching constant, or null if name is null
+     * @throws IllegalArgumentException if no constant has that name
+     */
+    public E lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (!name.isEmpty()) {
+            int slot = slotOf(name);
+            E candidate;
+            while ((candidate = table[slot]) != null) {
+                if (candidate.name().equals(name)) {
+                    return candidate;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        throw new IllegalArgumentException("No " + type.getSimpleName() + " named " + name);
+    }
+
+    private int slotOf(String name) {
+        int length = name.length();
+        int hash = length * 31 + name.charAt(0) * 7 + name.charAt(length - 1);
+        return (hash ^ (hash >>> 4)) & mask;
+    }
+}
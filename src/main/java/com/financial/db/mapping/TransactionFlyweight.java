@@ -0,0 +1,66 @@
+package com.financial.db.mapping;
+
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction;
+import com.financial.db.model.TransactionView;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Reusable holder that a scan decodes every row into. Its contents are only
+ * valid until the next row is read; copy them out with {@link #toView()} or
+ * {@link #toTransaction()} to keep a row.
+ *
+ * When the query selects the amount as minor units (an {@code amount_minor}
+ * column, see {@link Money#minorUnits(String)}) no BigDecimal is created
+ * unless {@link #getAmount()} is called.
+ */
+public final class TransactionFlyweight {
+    long id;
+    String accountNumber;
+    BigDecimal amount;
+    long amountMinorUnits;
+    Transaction.TransactionType type;
+    LocalDateTime timestamp;
+    String description;
+
+    public long getId() {
+        return id;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public BigDecimal getAmount() {
+        if (amount == null) {
+            amount = Money.toBigDecimal(amountMinorUnits);
+        }
+        return amount;
+    }
+
+    public long getAmountMinorUnits() {
+        return amountMinorUnits;
+    }
+
+    public Transaction.TransactionType getType() {
+        return type;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public TransactionView toView() {
+        return new TransactionView(id, accountNumber, getAmount(), type, timestamp, description);
+    }
+
+    public Transaction toTransaction() {
+        return new Transaction(id, accountNumber, getAmount(), type, timestamp, description);
+    }
+}
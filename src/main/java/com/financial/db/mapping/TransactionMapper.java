@@ -0,0 +1,110 @@
+package com.financial.db.mapping;
+
+import com.financial.db.model.Money;
+import com.financial.db.model.Transaction;
+import com.financial.db.model.TransactionView;
+import com.financial.db.util.CursorStream;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Maps transaction rows by column position. Positions are resolved from the
+ * result set metadata the first time a result set is seen, so every later row
+ * skips the label lookups. A mapper keeps per-result-set state and must not
+ * be shared between threads.
+ */
+public final class TransactionMapper implements CursorStream.RowReader<Transaction> {
+    private static final EnumLookup<Transaction.TransactionType> TYPES = EnumLookup.of(Transaction.TransactionType.class);
+
+    private final String idLabel;
+    private ResultSet bound;
+    private int id;
+    private int accountNumber;
+    private int amount;
+    private int amountMinorUnits;
+    private int type;
+    private int timestamp;
+    private int description;
+
+    public TransactionMapper() {
+        this("id");
+    }
+
+    /**
+     * @param idLabel Label of the transaction id column, for joins that alias it
+     */
+    public TransactionMapper(String idLabel) {
+        this.idLabel = idLabel;
+    }
+
+    @Override
+    public Transaction read(ResultSet rs) throws SQLException {
+        bind(rs);
+        return new Transaction(
+            rs.getLong(id),
+            rs.getString(accountNumber),
+            readAmount(rs),
+            TYPES.lookup(rs.getString(type)),
+            rs.getObject(timestamp, LocalDateTime.class),
+            rs.getString(description)
+        );
+    }
+
+    public TransactionView readView(ResultSet rs) throws SQLException {
+        bind(rs);
+        return new TransactionView(
+            rs.getLong(id),
+            rs.getString(accountNumber),
+            readAmount(rs),
+            TYPES.lookup(rs.getString(type)),
+            rs.getObject(timestamp, LocalDateTime.class),
+            rs.getString(description)
+        );
+    }
+
+    /**
+     * Decode the current row into a reused holder instead of a new object
+     * @param rs Result set positioned on a row
+     * @param target Holder to overwrite
+     * @return The holder
+     */
+    public TransactionFlyweight readInto(ResultSet rs, TransactionFlyweight target) throws SQLException {
+        bind(rs);
+        target.id = rs.getLong(id);
+        target.accountNumber = rs.getString(accountNumber);
+        if (amountMinorUnits != 0) {
+            target.amountMinorUnits = rs.getLong(amountMinorUnits);
+            target.amount = null;
+        } else {
+            target.amount = rs.getBigDecimal(amount);
+            target.amountMinorUnits = Money.fromBigDecimal(target.amount);
+        }
+        target.type = TYPES.lookup(rs.getString(type));
+        target.timestamp = rs.getObject(timestamp, LocalDateTime.class);
+        target.description = rs.getString(description);
+        return target;
+    }
+
+    private BigDecimal readAmount(ResultSet rs) throws SQLException {
+        return amount != 0 ? rs.getBigDecimal(amount) : Money.toBigDecimal(rs.getLong(amountMinorUnits));
+    }
+
+    private void bind(ResultSet rs) throws SQLException {
+        if (rs == bound) {
+            return;
+        }
+        int[] positions = ColumnIndex.resolve(rs, idLabel, "account_number", "amount", "type", "timestamp",
+            "description", "amount_minor");
+        id = ColumnIndex.require(positions[0], idLabel);
+        accountNumber = ColumnIndex.require(positions[1], "account_number");
+        amountMinorUnits = positions[6];
+        amount = amountMinorUnits != 0 ? positions[2] : ColumnIndex.require(positions[2], "amount");
+        type = ColumnIndex.require(positions[3], "type");
+        timestamp = ColumnIndex.require(positions[4], "timestamp");
+        description = ColumnIndex.require(positions[5], "description");
+        bound = rs;
+    }
+}
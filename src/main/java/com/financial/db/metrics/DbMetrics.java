@@ -0,0 +1,221 @@
+package com.financial.db.metrics;
+
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of per-operation database metrics.
+ *
+ * Each operation is registered as an MBean named
+ * {@code com.financial.db:type=Operation,name=<operation>}. The default
+ * registry also logs a dump of every operation that has been called every
+ * DB_METRICS_DUMP_INTERVAL_MS (default one minute, zero disables), as text
+ * or as one JSON object per line depending on DB_METRICS_DUMP_FORMAT.
+ */
+public class DbMetrics implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DbMetrics.class);
+
+    private static final String JMX_DOMAIN = "com.financial.db";
+
+    private static DbMetrics defaultMetrics;
+
+    private final ConcurrentHashMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final boolean registerMBeans;
+    private ScheduledExecutorService reporter;
+
+    /**
+     * @param registerMBeans Whether operations are published on the platform MBean server
+     */
+    public DbMetrics(boolean registerMBeans) {
+        this.registerMBeans = registerMBeans;
+    }
+
+    /**
+     * Process-wide registry, created on first use
+     * @return Shared metrics registry
+     */
+    public static synchronized DbMetrics getDefault() {
+        if (defaultMetrics == null) {
+            DbMetrics metrics = new DbMetrics(true);
+            long interval = Env.getLong("DB_METRICS_DUMP_INTERVAL_MS", 60_000);
+            if (interval > 0) {
+                metrics.startReporter(interval, "json".equalsIgnoreCase(Env.getString("DB_METRICS_DUMP_FORMAT", "text")));
+            }
+            defaultMetrics = metrics;
+        }
+        return defaultMetrics;
+    }
+
+    /**
+     * Metrics for an operation in the default registry. Look this up once and
+     * keep it; the lookup itself is not meant for the hot path.
+     * @param name Operation name, e.g. {@code AccountDAO.getAccountByNumber}
+     * @return Metrics for the operation
+     */
+    public static OperationMetrics operation(String name) {
+        return getDefault().get(name);
+    }
+
+    public OperationMetrics get(String name) {
+        OperationMetrics existing = operations.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        OperationMetrics created = new OperationMetrics(name);
+        existing = operations.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (registerMBeans) {
+            register(created);
+        }
+        return created;
+    }
+
+    /**
+     * @return Every registered operation, ordered by name
+     */
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> result = new ArrayList<>(operations.values());
+        result.sort(Comparator.comparing(OperationMetrics::getName));
+        return result;
+    }
+
+    /**
+     * Human-readable table of every operation that has been called; latencies in microseconds
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder(String.format(Locale.ROOT,
+            "%-48s %10s %8s %12s %9s %9s %9s %9s %9s %9s %9s%n",
+            "operation", "ok", "errors", "rows", "mean", "p50", "p90", "p99", "p99.9", "max", "acq p99"));
+        for (OperationMetrics op : getOperations()) {
+            LatencyHistogram.Snapshot latency = op.getLatency().snapshot();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            LatencyHistogram.Snapshot acquire = op.getAcquireLatency().snapshot();
+            out.append(String.format(Locale.ROOT,
+                "%-48s %10d %8d %12d %9.1f %9d %9d %9d %9d %9d %9d%n",
+                op.getName(), op.getSuccessCount(), op.getErrorCount(), op.getRowCount(),
+                latency.getMeanNanos() / 1_000.0,
+                micros(latency.getValueAtPercentile(50)),
+                micros(latency.getValueAtPercentile(90)),
+                micros(latency.getValueAtPercentile(99)),
+                micros(latency.getValueAtPercentile(99.9)),
+                micros(latency.getMaxNanos()),
+                micros(acquire.getValueAtPercentile(99))));
+        }
+        return out.toString();
+    }
+
+    /**
+     * JSON object per operation that has been called, one per line; latencies in microseconds
+     */
+    public String toJson() {
+        StringBuilder out = new StringBuilder();
+        for (OperationMetrics op : getOperations()) {
+            LatencyHistogram.Snapshot latency = op.getLatency().snapshot();
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            LatencyHistogram.Snapshot acquire = op.getAcquireLatency().snapshot();
+            out.append(String.format(Locale.ROOT,
+                "{\"operation\":\"%s\",\"success\":%d,\"errors\":%d,\"rows\":%d," +
+                "\"meanUs\":%.1f,\"p50Us\":%d,\"p90Us\":%d,\"p99Us\":%d,\"p999Us\":%d,\"maxUs\":%d," +
+                "\"acquireP50Us\":%d,\"acquireP99Us\":%d,\"acquireMaxUs\":%d}%n",
+                op.getName(), op.getSuccessCount(), op.getErrorCount(), op.getRowCount(),
+                latency.getMeanNanos() / 1_000.0,
+                micros(latency.getValueAtPercentile(50)),
+                micros(latency.getValueAtPercentile(90)),
+                micros(latency.getValueAtPercentile(99)),
+                micros(latency.getValueAtPercentile(99.9)),
+                micros(latency.getMaxNanos()),
+                micros(acquire.getValueAtPercentile(50)),
+                micros(acquire.getValueAtPercentile(99)),
+                micros(acquire.getMaxNanos())));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Log a dump of all operations at a fixed interval
+     * @param intervalMillis Time between dumps
+     * @param json Dump JSON lines instead of a text table
+     */
+    public synchronized void startReporter(long intervalMillis, boolean json) {
+        if (reporter != null) {
+            throw new IllegalStateException("Metrics reporter already started");
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            if (hasActivity()) {
+                logger.info("Database operation metrics:{}{}", System.lineSeparator(), json ? toJson() : toText());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+        if (registerMBeans) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (OperationMetrics op : operations.values()) {
+                try {
+                    server.unregisterMBean(objectName(op.getName()));
+                } catch (JMException e) {
+                    // Already gone
+                }
+            }
+        }
+    }
+
+    private boolean hasActivity() {
+        for (OperationMetrics op : operations.values()) {
+            if (op.getLatency().getCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void register(OperationMetrics op) {
+        try {
+            ObjectName name = objectName(op.getName());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(op, name);
+            }
+        } catch (JMException e) {
+            logger.warn("Failed to register metrics MBean for {}", op.getName(), e);
+        }
+    }
+
+    private static ObjectName objectName(String operation) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + ObjectName.quote(operation));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,137 @@
+package com.financial.db.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, outcome and row counters for one named database operation.
+ *
+ * Callers hold an instance in a static field and report each call with
+ * {@link #record(long, long)}; nothing on that path allocates.
+ * <pre>
+ * long start = System.nanoTime();
+ * long rows = OperationMetrics.FAILED;
+ * try (Connection connection = getConnection(OPERATION)) {
+ *     rows = ...;
+ * } finally {
+ *     OPERATION.record(start, rows);
+ * }
+ * </pre>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+    /**
+     * Row count that marks a call as failed
+     */
+    public static final long FAILED = -1;
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record a completed call
+     * @param startNanos {@link System#nanoTime()} taken when the call started
+     * @param rowCount Rows read or written, or {@link #FAILED} if the call threw
+     */
+    public void record(long startNanos, long rowCount) {
+        latency.record(System.nanoTime() - startNanos);
+        if (rowCount < 0) {
+            errors.increment();
+        } else {
+            successes.increment();
+            rows.add(rowCount);
+        }
+    }
+
+    /**
+     * Record time spent waiting for a pooled connection
+     * @param nanos Acquire time in nanoseconds
+     */
+    public void recordAcquire(long nanos) {
+        acquireLatency.record(nanos);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return successes.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRowCount() {
+        return rows.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.snapshot().getMeanNanos() / 1_000.0;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return micros(latency.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getP90Micros() {
+        return micros(latency.snapshot().getValueAtPercentile(90));
+    }
+
+    @Override
+    public long getP99Micros() {
+        return micros(latency.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getP999Micros() {
+        return micros(latency.snapshot().getValueAtPercentile(99.9));
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return micros(latency.snapshot().getMaxNanos());
+    }
+
+    @Override
+    public long getAcquireP50Micros() {
+        return micros(acquireLatency.snapshot().getValueAtPercentile(50));
+    }
+
+    @Override
+    public long getAcquireP99Micros() {
+        return micros(acquireLatency.snapshot().getValueAtPercentile(99));
+    }
+
+    @Override
+    public long getAcquireMaxMicros() {
+        return micros(acquireLatency.snapshot().getMaxNanos());
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
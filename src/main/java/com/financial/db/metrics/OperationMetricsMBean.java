@@ -0,0 +1,34 @@
+package com.financial.db.metrics;
+
+/**
+ * JMX view of one database operation. Latencies are in microseconds and
+ * cover the whole call, including the wait for a pooled connection.
+ */
+public interface OperationMetricsMBean {
+
+    String getName();
+
+    long getSuccessCount();
+
+    long getErrorCount();
+
+    long getRowCount();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP90Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    long getAcquireP50Micros();
+
+    long getAcquireP99Micros();
+
+    long getAcquireMaxMicros();
+}
@@ -51,6 +51,17 @@ public class Account {
         this.balance = balance;
     }
 
+    /**
+     * @return Balance as a {@link Money} count of minor units
+     */
+    public long getBalanceMinorUnits() {
+        return Money.fromBigDecimal(balance);
+    }
+
+    public void setBalanceMinorUnits(long balanceMinorUnits) {
+        this.balance = Money.toBigDecimal(balanceMinorUnits);
+    }
+
     public String getOwnerName() {
         return ownerName;
     }
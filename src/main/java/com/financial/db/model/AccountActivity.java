@@ -0,0 +1,44 @@
+package com.financial.db.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class AccountActivity {
+    private final String accountNumber;
+    private final BigDecimal totalAmount;
+    private final long transactionCount;
+    private final LocalDateTime lastActivity;
+
+    public AccountActivity(String accountNumber, BigDecimal totalAmount, long transactionCount, LocalDateTime lastActivity) {
+        this.accountNumber = accountNumber;
+        this.totalAmount = totalAmount;
+        this.transactionCount = transactionCount;
+        this.lastActivity = lastActivity;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountActivity{" +
+                "accountNumber='" + accountNumber + '\'' +
+                ", totalAmount=" + totalAmount +
+                ", transactionCount=" + transactionCount +
+                ", lastActivity=" + lastActivity +
+                '}';
+    }
+}
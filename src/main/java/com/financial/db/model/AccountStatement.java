@@ -0,0 +1,66 @@
+package com.financial.db.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An account's ledger over a period: the balance before it, every row dated
+ * within it, oldest first, and the balance after it. The period includes
+ * its start and excludes its end.
+ */
+public class AccountStatement {
+    private final String accountNumber;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final BigDecimal openingBalance;
+    private final BigDecimal closingBalance;
+    private final List<Transaction> transactions;
+
+    public AccountStatement(String accountNumber, LocalDateTime from, LocalDateTime to, BigDecimal openingBalance,
+                            BigDecimal closingBalance, List<Transaction> transactions) {
+        this.accountNumber = accountNumber;
+        this.from = from;
+        this.to = to;
+        this.openingBalance = openingBalance;
+        this.closingBalance = closingBalance;
+        this.transactions = Collections.unmodifiableList(transactions);
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public BigDecimal getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public BigDecimal getClosingBalance() {
+        return closingBalance;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountStatement{" +
+                "accountNumber='" + accountNumber + '\'' +
+                ", from=" + from +
+                ", to=" + to +
+                ", openingBalance=" + openingBalance +
+                ", closingBalance=" + closingBalance +
+                ", transactions=" + transactions.size() +
+                '}';
+    }
+}
@@ -0,0 +1,25 @@
+package com.financial.db.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable account row, for read paths that never modify what they load.
+ */
+public record AccountView(long id, String accountNumber, BigDecimal balance, String ownerName,
+                          LocalDateTime createdAt, Account.AccountType type) {
+
+    /**
+     * @return Balance as a {@link Money} count of minor units
+     */
+    public long balanceMinorUnits() {
+        return Money.fromBigDecimal(balance);
+    }
+
+    public Account toAccount() {
+        Account account = new Account(id, accountNumber, balance, ownerName);
+        account.setCreatedAt(createdAt);
+        account.setType(type);
+        return account;
+    }
+}
@@ -0,0 +1,154 @@
+package com.financial.db.model;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Fixed-point money held as a {@code long} count of minor units (cents), for
+ * hot paths where a {@link BigDecimal} per amount is too expensive.
+ *
+ * Amounts match the schema's two-decimal NUMERIC columns. Arithmetic throws
+ * {@link ArithmeticException} on overflow instead of wrapping, and
+ * conversions throw if a value has more decimals than the scale allows.
+ *
+ * To move amounts through JDBC without a BigDecimal, scale them in SQL:
+ * write {@link #PARAMETER} where a NUMERIC parameter goes and bind the minor
+ * units with {@link #bind}, and select {@link #minorUnits(String)} to read a
+ * NUMERIC column back with {@code getLong}.
+ */
+public final class Money {
+    /**
+     * Decimal places of every amount
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Minor units per major unit
+     */
+    public static final long UNIT = 100;
+
+    /**
+     * Placeholder that turns a bound minor-unit count into a NUMERIC amount on the server
+     */
+    public static final String PARAMETER = "(?::bigint * " + BigDecimal.ONE.movePointLeft(SCALE).toPlainString() + ")";
+
+    private Money() {
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long negate(long amount) {
+        return Math.negateExact(amount);
+    }
+
+    public static long multiply(long amount, long factor) {
+        return Math.multiplyExact(amount, factor);
+    }
+
+    public static long sum(long[] amounts) {
+        long total = 0;
+        for (long amount : amounts) {
+            total = Math.addExact(total, amount);
+        }
+        return total;
+    }
+
+    /**
+     * @param amount Amount with at most {@value #SCALE} decimals
+     * @return Amount in minor units
+     * @throws ArithmeticException if the amount has more decimals or does not fit in a long
+     */
+    public static long fromBigDecimal(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Parse a plain decimal such as {@code "-12.5"} or {@code "1000.00"} without allocating
+     * @param text Digits with an optional leading sign and at most {@value #SCALE} decimals
+     * @return Amount in minor units
+     * @throws NumberFormatException if the text is not such a decimal
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || decimals == SCALE) {
+                throw new NumberFormatException("Not a money amount: " + text);
+            }
+            // Accumulate negatively so Long.MIN_VALUE parses too
+            value = Math.subtractExact(Math.multiplyExact(value, 10), c - '0');
+            digits++;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not a money amount: " + text);
+        }
+        for (int pad = Math.max(decimals, 0); pad < SCALE; pad++) {
+            value = Math.multiplyExact(value, 10);
+        }
+        return negative ? value : Math.negateExact(value);
+    }
+
+    /**
+     * Append the amount as a plain decimal with {@value #SCALE} decimals
+     * @return The builder
+     */
+    public static StringBuilder appendTo(StringBuilder out, long minorUnits) {
+        long major = minorUnits / UNIT;
+        long minor = Math.abs(minorUnits % UNIT);
+        if (minorUnits < 0 && major == 0) {
+            out.append('-');
+        }
+        out.append(major).append('.');
+        for (long place = UNIT / 10; place > minor && place > 1; place /= 10) {
+            out.append('0');
+        }
+        return out.append(minor);
+    }
+
+    public static String format(long minorUnits) {
+        return appendTo(new StringBuilder(24), minorUnits).toString();
+    }
+
+    /**
+     * Bind minor units to a {@link #PARAMETER} placeholder
+     */
+    public static void bind(PreparedStatement stmt, int index, long minorUnits) throws SQLException {
+        stmt.setLong(index, minorUnits);
+    }
+
+    /**
+     * @param column NUMERIC column or expression with {@value #SCALE} decimals
+     * @return Expression selecting the column as a BIGINT count of minor units
+     */
+    public static String minorUnits(String column) {
+        return "(" + column + " * " + UNIT + ")::bigint";
+    }
+}
@@ -53,6 +53,17 @@ public class Transaction {
         this.amount = amount;
     }
 
+    /**
+     * @return Amount as a {@link Money} count of minor units
+     */
+    public long getAmountMinorUnits() {
+        return Money.fromBigDecimal(amount);
+    }
+
+    public void setAmountMinorUnits(long amountMinorUnits) {
+        this.amount = Money.toBigDecimal(amountMinorUnits);
+    }
+
     public TransactionType getType() {
         return type;
     }
@@ -0,0 +1,38 @@
+package com.financial.db.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of transactions plus the cursor for the page after it.
+ * The cursor is opaque to callers and {@code null} on the last page.
+ */
+public class TransactionPage {
+    private final List<Transaction> transactions;
+    private final String nextCursor;
+
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = Collections.unmodifiableList(transactions);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionPage{" +
+                "transactions=" + transactions.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
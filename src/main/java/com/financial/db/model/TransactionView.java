@@ -0,0 +1,22 @@
+package com.financial.db.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Immutable transaction row, for read paths that never modify what they load.
+ */
+public record TransactionView(long id, String accountNumber, BigDecimal amount,
+                              Transaction.TransactionType type, LocalDateTime timestamp, String description) {
+
+    /**
+     * @return Amount as a {@link Money} count of minor units
+     */
+    public long amountMinorUnits() {
+        return Money.fromBigDecimal(amount);
+    }
+
+    public Transaction toTransaction() {
+        return new Transaction(id, accountNumber, amount, type, timestamp, description);
+    }
+}
@@ -0,0 +1,272 @@
+package com.financial.db.partition;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.admission.Priority;
+import com.financial.db.metrics.DbMetrics;
+import com.financial.db.metrics.OperationMetrics;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates and retires the monthly range partitions of the transactions table.
+ *
+ * New partitions are named {@code transactions_pYYYY_MM} after the first
+ * month they cover and span a fixed number of months (one by default). The
+ * manager keeps partitions in place for some months ahead so inserts never
+ * find themselves without one, and detaches, or drops, partitions that have
+ * fallen entirely outside the retention window. Existing partitions are
+ * judged by their actual bounds, not their names, so the width can change
+ * on a database that already has partitions: months already covered are
+ * skipped, and a new partition stops where the next existing one starts.
+ *
+ * A detached partition keeps its table and name, so creating a partition for
+ * the same months again fails until that table is dropped or attached back.
+ * Retiring a partition removes its rows from the ledger but not from the
+ * account_balances aggregates, so verify-balances reports those accounts
+ * afterwards; rebuild-balances recomputes them from what is left.
+ */
+public class PartitionManager extends FinancialDatabaseManager {
+    private static final Logger logger = LoggerFactory.getLogger(PartitionManager.class);
+
+    private static final String TABLE = "transactions";
+    // Bounds as pg_get_expr prints them, e.g. FOR VALUES FROM ('2024-01-01 00:00:00') TO ('2024-02-01 00:00:00')
+    private static final Pattern MONTH_BOUNDS = Pattern.compile(
+        "FOR VALUES FROM \\('(\\d{4})-(\\d{2})-01( 00:00:00)?'\\) TO \\('(\\d{4})-(\\d{2})-01( 00:00:00)?'\\)");
+    private static final DateTimeFormatter NAME_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private static final String LIST_PARTITIONS_SQL =
+        "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+        "WHERE i.inhparent = ?::regclass";
+    private static final String TABLE_EXISTS_SQL = "SELECT to_regclass(?) IS NOT NULL";
+
+    private static final OperationMetrics LIST = DbMetrics.operation("PartitionManager.listPartitions");
+    private static final OperationMetrics CREATE = DbMetrics.operation("PartitionManager.createPartitions");
+    private static final OperationMetrics EXPIRE = DbMetrics.operation("PartitionManager.expirePartitions");
+
+    private final int monthsPerPartition;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropExpired;
+
+    /**
+     * Configure from TRANSACTIONS_PARTITION_MONTHS (default 1),
+     * TRANSACTIONS_PARTITIONS_AHEAD_MONTHS (default 3),
+     * TRANSACTIONS_RETENTION_MONTHS (default 0, keep everything) and
+     * TRANSACTIONS_EXPIRED_PARTITIONS ({@code detach}, the default, or {@code drop})
+     */
+    public PartitionManager() {
+        this(ConnectionPool.getDefault(),
+             Env.getInt("TRANSACTIONS_PARTITION_MONTHS", 1),
+             Env.getInt("TRANSACTIONS_PARTITIONS_AHEAD_MONTHS", 3),
+             Env.getInt("TRANSACTIONS_RETENTION_MONTHS", 0),
+             "drop".equalsIgnoreCase(Env.getString("TRANSACTIONS_EXPIRED_PARTITIONS", "detach")));
+    }
+
+    /**
+     * @param pool Pool to borrow connections from
+     * @param monthsPerPartition Months covered by each partition; must divide 12
+     * @param monthsAhead Months past the current one that must already have a partition
+     * @param retentionMonths Months of history to keep, or 0 to keep every partition
+     * @param dropExpired Drop expired partitions instead of only detaching them
+     */
+    public PartitionManager(ConnectionPool pool, int monthsPerPartition, int monthsAhead,
+                            int retentionMonths, boolean dropExpired) {
+        super(pool);
+        if (monthsPerPartition < 1 || 12 % monthsPerPartition != 0 || monthsAhead < 0 || retentionMonths < 0) {
+            throw new IllegalArgumentException("Invalid partition settings");
+        }
+        this.monthsPerPartition = monthsPerPartition;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropExpired = dropExpired;
+    }
+
+    /**
+     * Create the partitions needed for the coming months and retire expired ones.
+     * Safe to run repeatedly, e.g. daily from cron.
+     * @return Number of partitions created and retired
+     */
+    public int maintain() throws SQLException {
+        YearMonth now = YearMonth.now();
+        int changed = createPartitions(now, now.plusMonths(monthsAhead)).size();
+        if (retentionMonths > 0) {
+            changed += expirePartitions(now.minusMonths(retentionMonths)).size();
+        }
+        return changed;
+    }
+
+    /**
+     * Make sure every month in the range has a partition, e.g. before
+     * back-filling history
+     * @param from First month to cover
+     * @param through Last month to cover
+     * @return Names of the partitions that were created
+     */
+    public List<String> createPartitions(YearMonth from, YearMonth through) throws SQLException {
+        List<String> created = new ArrayList<>();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(CREATE, Priority.BULK);
+             Statement stmt = connection.createStatement()) {
+            List<Partition> existing = listPartitions(connection);
+            YearMonth month = alignToPartition(from);
+            while (!month.isAfter(through)) {
+                Partition covering = covering(existing, month);
+                if (covering != null) {
+                    month = covering.end();
+                    continue;
+                }
+                // Up to the next aligned boundary, or the next existing partition if that starts sooner
+                YearMonth end = alignToPartition(month).plusMonths(monthsPerPartition);
+                for (Partition other : existing) {
+                    if (other.start().isAfter(month) && other.start().isBefore(end)) {
+                        end = other.start();
+                    }
+                }
+                Partition partition = new Partition(nameOf(month), month, end);
+                if (tableExists(connection, partition.name())) {
+                    // Most likely detached by expirePartitions; attaching it back would restore retired rows
+                    throw new SQLException("Table " + partition.name() + " exists but is not a partition of " +
+                        TABLE + "; drop it or attach it back before creating a partition for " + month);
+                }
+                stmt.execute("CREATE TABLE " + partition.name() + " PARTITION OF " + TABLE +
+                             " FOR VALUES FROM ('" + partition.start().atDay(1) + "') TO ('" + partition.end().atDay(1) + "')");
+                existing.add(partition);
+                created.add(partition.name());
+                logger.info("Created partition {} for [{}, {})", partition.name(), partition.start(), partition.end());
+                month = end;
+            }
+            rows = created.size();
+        } catch (SQLException e) {
+            logger.error("Failed to create transaction partitions", e);
+            throw e;
+        } finally {
+            CREATE.record(start, rows);
+        }
+        return created;
+    }
+
+    /**
+     * Detach, or drop, every partition whose rows all fall before the cutoff.
+     * Detaching briefly locks the transactions table.
+     * @param cutoff First month to keep
+     * @return Names of the partitions that were retired
+     */
+    public List<String> expirePartitions(YearMonth cutoff) throws SQLException {
+        List<String> expired = new ArrayList<>();
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(EXPIRE, Priority.BULK);
+             Statement stmt = connection.createStatement()) {
+            for (Partition partition : listPartitions(connection)) {
+                if (partition.end().isAfter(cutoff)) {
+                    continue;
+                }
+                stmt.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition.name());
+                if (dropExpired) {
+                    stmt.execute("DROP TABLE " + partition.name());
+                }
+                expired.add(partition.name());
+                logger.info("{} partition {} for [{}, {})", dropExpired ? "Dropped" : "Detached",
+                    partition.name(), partition.start(), partition.end());
+            }
+            rows = expired.size();
+        } catch (SQLException e) {
+            logger.error("Failed to expire transaction partitions", e);
+            throw e;
+        } finally {
+            EXPIRE.record(start, rows);
+        }
+        return expired;
+    }
+
+    /**
+     * @return Partitions attached to the transactions table, oldest first
+     */
+    public List<Partition> listPartitions() throws SQLException {
+        long start = System.nanoTime();
+        long rows = OperationMetrics.FAILED;
+        try (Connection connection = getConnection(LIST, Priority.BULK)) {
+            List<Partition> partitions = listPartitions(connection);
+            rows = partitions.size();
+            return partitions;
+        } catch (SQLException e) {
+            logger.error("Failed to list transaction partitions", e);
+            throw e;
+        } finally {
+            LIST.record(start, rows);
+        }
+    }
+
+    private List<Partition> listPartitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(LIST_PARTITIONS_SQL)) {
+            stmt.setString(1, TABLE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    String bounds = rs.getString(2);
+                    Matcher matcher = MONTH_BOUNDS.matcher(bounds);
+                    if (!matcher.matches()) {
+                        // A default partition or bounds off month boundaries; leave it alone
+                        logger.debug("Ignoring partition {} {}", name, bounds);
+                        continue;
+                    }
+                    partitions.add(new Partition(name,
+                        YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))),
+                        YearMonth.of(Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)))));
+                }
+            }
+        }
+        partitions.sort(Comparator.comparing(Partition::start));
+        return partitions;
+    }
+
+    private static boolean tableExists(Connection connection, String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(TABLE_EXISTS_SQL)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static Partition covering(List<Partition> partitions, YearMonth month) {
+        for (Partition partition : partitions) {
+            if (!partition.start().isAfter(month) && partition.end().isAfter(month)) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    private YearMonth alignToPartition(YearMonth month) {
+        return month.minusMonths((month.getMonthValue() - 1) % monthsPerPartition);
+    }
+
+    private static String nameOf(YearMonth month) {
+        return TABLE + "_p" + month.format(NAME_SUFFIX);
+    }
+
+    /**
+     * One partition of the transactions table, covering {@code [start, end)}
+     */
+    public record Partition(String name, YearMonth start, YearMonth end) {
+    }
+}
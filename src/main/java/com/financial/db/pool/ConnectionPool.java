@@ -0,0 +1,328 @@
+package com.financial.db.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool.
+ *
+ * Connections are handed out LIFO so the hottest connections stay warm and
+ * surplus ones age out. A background housekeeper closes connections idle for
+ * longer than the idle timeout (never going below the minimum size) and tops
+ * the pool back up to the minimum.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private static ConnectionPool defaultPool;
+
+    private final PoolConfig config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService housekeeper;
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+    private int total;
+    private boolean closed;
+
+    public ConnectionPool(PoolConfig config) {
+        config.validate();
+        this.config = config;
+        try {
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("Connection pool started (min={}, max={})", config.getMinSize(), config.getMaxSize());
+    }
+
+    /**
+     * Process-wide pool configured from the environment, created on first use
+     * and closed on JVM shutdown.
+     * @return Shared connection pool
+     */
+    public static synchronized ConnectionPool getDefault() {
+        if (defaultPool == null) {
+            ConnectionPool pool = new ConnectionPool(PoolConfig.fromEnv());
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "connection-pool-shutdown"));
+            defaultPool = pool;
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Borrow a connection, waiting up to the acquire timeout for one to become free.
+     * Closing the returned connection gives it back to the pool.
+     * @return Pooled connection
+     * @throws SQLTimeoutException if no connection became available in time
+     */
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getAcquireTimeoutMillis());
+        while (true) {
+            PooledConnection candidate = null;
+            lock.lock();
+            try {
+                while (candidate == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate == null && total < config.getMaxSize()) {
+                        total++;
+                        break;
+                    }
+                    if (candidate == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis() +
+                                " ms waiting for a database connection");
+                        }
+                        available.awaitNanos(remaining);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            } finally {
+                lock.unlock();
+            }
+
+            if (candidate == null) {
+                // We reserved a slot above; open the connection outside the lock
+                return open().borrow();
+            }
+            if (isUsable(candidate)) {
+                return candidate.borrow();
+            }
+            discard(candidate);
+        }
+    }
+
+    /**
+     * Set the server-side statement timeout on a borrowed connection. Pooled
+     * connections remember the value, so setting the one already in effect
+     * costs nothing; other connections always get the SET.
+     * @param connection Connection borrowed from any pool, or a plain one
+     * @param millis Timeout in milliseconds, 0 for none
+     */
+    public static void setStatementTimeout(Connection connection, long millis) throws SQLException {
+        PooledConnection pooled = PooledConnection.of(connection);
+        if (pooled != null) {
+            pooled.setStatementTimeout(millis);
+            return;
+        }
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET statement_timeout = " + millis);
+        }
+    }
+
+    public int getTotalConnections() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleConnections() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveConnections() {
+        lock.lock();
+        try {
+            return total - idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    void release(PooledConnection connection) {
+        try {
+            connection.reset();
+        } catch (SQLException e) {
+            logger.warn("Discarding connection that failed to reset", e);
+            discard(connection);
+            return;
+        }
+        connection.touch();
+        lock.lock();
+        try {
+            if (!closed) {
+                idle.addFirst(connection);
+                available.signal();
+                return;
+            }
+            total--;
+        } finally {
+            lock.unlock();
+        }
+        connection.closePhysical();
+    }
+
+    private PooledConnection open() throws SQLException {
+        try {
+            Properties properties = new Properties();
+            if (config.getUser() != null) {
+                properties.setProperty("user", config.getUser());
+            }
+            if (config.getPassword() != null) {
+                properties.setProperty("password", config.getPassword());
+            }
+            properties.setProperty("prepareThreshold", Integer.toString(config.getPrepareThreshold()));
+            Connection physical = DriverManager.getConnection(config.getUrl(), properties);
+            StatementCache statementCache = config.getStatementCacheSize() > 0 ?
+                new StatementCache(physical, config.getStatementCacheSize(), statementCacheStats) : null;
+            return new PooledConnection(this, physical, statementCache);
+        } catch (SQLException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            logger.error("Failed to connect to database", e);
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        long idleNanos = System.nanoTime() - connection.getLastUsedNanos();
+        if (idleNanos < TimeUnit.MILLISECONDS.toNanos(config.getValidationIntervalMillis())) {
+            return true;
+        }
+        try {
+            return connection.getPhysical().isValid(config.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        connection.closePhysical();
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void housekeep() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleTimeoutMillis());
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            // Oldest idle connections sit at the tail of the deque
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total - expired.size() > config.getMinSize()) {
+                PooledConnection connection = it.next();
+                if (now - connection.getLastUsedNanos() < idleTimeoutNanos) {
+                    break;
+                }
+                it.remove();
+                expired.add(connection);
+            }
+            total -= expired.size();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection connection : expired) {
+            connection.closePhysical();
+        }
+        if (!expired.isEmpty()) {
+            logger.debug("Evicted {} idle connections", expired.size());
+        }
+        try {
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to top up connection pool", e);
+        }
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= config.getMinSize()) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                release(open());
+            } catch (SQLException e) {
+                throw new RuntimeException("Database connection failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+        }
+        for (PooledConnection connection : toClose) {
+            connection.closePhysical();
+        }
+        logger.info("Connection pool closed");
+    }
+}
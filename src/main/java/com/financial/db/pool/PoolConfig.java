@@ -0,0 +1,179 @@
+package com.financial.db.pool;
+
+import com.financial.db.util.Env;
+
+/**
+ * Connection pool settings. {@link #fromEnv()} reads the same DB_* variables
+ * as the rest of the application plus the DB_POOL_* tuning knobs.
+ */
+public class PoolConfig {
+    private String url;
+    private String user;
+    private String password;
+    private int minSize = 2;
+    private int maxSize = 10;
+    private long acquireTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 600_000;
+    private long validationIntervalMillis = 5_000;
+    private int validationTimeoutSeconds = 2;
+    private long housekeepingIntervalMillis = 30_000;
+    private int statementCacheSize = 64;
+    private int prepareThreshold = 5;
+
+    public PoolConfig() {
+        // Default constructor
+    }
+
+    public PoolConfig(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Build a configuration from environment variables
+     * @return Pool configuration for the primary database
+     */
+    public static PoolConfig fromEnv() {
+        String url = "jdbc:postgresql://" +
+            Env.getString("DB_HOST", "localhost") + ":" +
+            Env.getString("DB_PORT", "5432") + "/" +
+            Env.getString("DB_NAME", "financial_db");
+
+        PoolConfig config = new PoolConfig(url, System.getenv("DB_USER"), System.getenv("DB_PASS"));
+        config.setMinSize(Env.getInt("DB_POOL_MIN_SIZE", config.getMinSize()));
+        config.setMaxSize(Env.getInt("DB_POOL_MAX_SIZE", config.getMaxSize()));
+        config.setAcquireTimeoutMillis(Env.getLong("DB_POOL_ACQUIRE_TIMEOUT_MS", config.getAcquireTimeoutMillis()));
+        config.setIdleTimeoutMillis(Env.getLong("DB_POOL_IDLE_TIMEOUT_MS", config.getIdleTimeoutMillis()));
+        config.setValidationIntervalMillis(Env.getLong("DB_POOL_VALIDATION_INTERVAL_MS", config.getValidationIntervalMillis()));
+        config.setStatementCacheSize(Env.getInt("DB_POOL_STATEMENT_CACHE_SIZE", config.getStatementCacheSize()));
+        config.setPrepareThreshold(Env.getInt("DB_PREPARE_THRESHOLD", config.getPrepareThreshold()));
+        return config;
+    }
+
+    void validate() {
+        if (url == null) {
+            throw new IllegalArgumentException("Pool url must be set");
+        }
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        if (acquireTimeoutMillis < 0 || idleTimeoutMillis < 0 || validationIntervalMillis < 0) {
+            throw new IllegalArgumentException("Pool timeouts must not be negative");
+        }
+        if (housekeepingIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Housekeeping interval must be positive");
+        }
+        if (statementCacheSize < 0 || prepareThreshold < 0) {
+            throw new IllegalArgumentException("Statement cache size and prepare threshold must not be negative");
+        }
+    }
+
+    // Getters and Setters
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Connections idle for longer than this are checked with {@code isValid}
+     * before being handed out. Zero validates on every borrow.
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public long getHousekeepingIntervalMillis() {
+        return housekeepingIntervalMillis;
+    }
+
+    public void setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+        this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+    }
+
+    /**
+     * Prepared statements cached per connection; zero disables the cache
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Executions of a statement after which the driver switches it to a
+     * server-side prepare (pgjdbc's prepareThreshold)
+     */
+    public int getPrepareThreshold() {
+        return prepareThreshold;
+    }
+
+    public void setPrepareThreshold(int prepareThreshold) {
+        this.prepareThreshold = prepareThreshold;
+    }
+}
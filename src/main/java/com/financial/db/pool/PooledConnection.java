@@ -0,0 +1,157 @@
+package com.financial.db.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A physical connection owned by a {@link ConnectionPool}. Each borrow hands
+ * out a fresh proxy whose {@code close()} returns the physical connection to
+ * the pool, so a handle kept after close cannot touch the next borrower's work.
+ */
+class PooledConnection {
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private volatile long lastUsedNanos;
+    // Server default until set through setStatementTimeout
+    private long statementTimeoutMillis = -1;
+
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    void touch() {
+        lastUsedNanos = System.nanoTime();
+    }
+
+    Connection borrow() {
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new Handle());
+    }
+
+    /**
+     * Restore the session state a borrower may have changed
+     * @throws SQLException if the connection is no longer usable
+     */
+    void reset() throws SQLException {
+        if (statementCache != null) {
+            statementCache.releaseAll();
+        }
+        if (!physical.getAutoCommit()) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+        if (physical.isReadOnly()) {
+            physical.setReadOnly(false);
+        }
+        physical.clearWarnings();
+    }
+
+    /**
+     * @return Pooled connection behind a borrowed handle, or null if it is not one
+     */
+    static PooledConnection of(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())
+                && Proxy.getInvocationHandler(connection) instanceof Handle handle) {
+            return handle.owner();
+        }
+        return null;
+    }
+
+    /**
+     * Change the server-side statement timeout, skipping the round trip when
+     * it is already set. Kept across borrows, unlike other session state.
+     */
+    void setStatementTimeout(long millis) throws SQLException {
+        if (millis == statementTimeoutMillis) {
+            return;
+        }
+        try (Statement stmt = physical.createStatement()) {
+            stmt.execute("SET statement_timeout = " + millis);
+        }
+        statementTimeoutMillis = millis;
+    }
+
+    void closePhysical() {
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // Nothing useful to do with a connection we are discarding
+        }
+    }
+
+    /**
+     * Only prepareStatement(sql) and its forward-only, read-only equivalent are
+     * cached; variants asking for generated keys or scrollable results are not
+     */
+    private static boolean isPlainPrepare(Object[] args) {
+        if (args.length == 1) {
+            return true;
+        }
+        return args.length == 3
+            && (Integer) args[1] == ResultSet.TYPE_FORWARD_ONLY
+            && (Integer) args[2] == ResultSet.CONCUR_READ_ONLY;
+    }
+
+    private final class Handle implements InvocationHandler {
+        private boolean closed;
+
+        PooledConnection owner() {
+            return PooledConnection.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + physical + (closed ? ", closed]" : "]");
+                case "prepareStatement":
+                    if (!closed && statementCache != null && isPlainPrepare(args)) {
+                        return statementCache.prepare((String) args[0]);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.financial.db.pool;
+
+/**
+ * How fresh the data behind a routed read has to be.
+ */
+public enum ReadConsistency {
+    /**
+     * Any replica within the staleness bound, otherwise the primary
+     */
+    EVENTUAL,
+
+    /**
+     * A replica that has replayed everything committed on the primary before
+     * the read started, otherwise the primary. Costs one extra round trip to
+     * each database checked.
+     */
+    READ_YOUR_WRITES,
+
+    /**
+     * Always the primary
+     */
+    PRIMARY
+}
@@ -0,0 +1,261 @@
+package com.financial.db.pool;
+
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes read-only work to streaming replicas and everything else to the primary.
+ *
+ * Reads are spread round-robin over the replicas that are reachable, still
+ * in recovery and no further behind than the staleness bound. A background
+ * check measures each replica's lag every check interval. A replica counts
+ * as current, however old its last replayed transaction, if it has replayed
+ * the primary's WAL position read just before the check, or if it has
+ * replayed all it received and its WAL receiver is still streaming; one
+ * whose receiver has disconnected falls behind by the age of its last
+ * replayed transaction. When no replica qualifies the read goes to the
+ * primary.
+ */
+public class ReadRouter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadRouter.class);
+
+    // Parameter: the primary's current WAL position, or null if it could not be read
+    private static final String LAG_SQL =
+        "SELECT pg_is_in_recovery(), " +
+        "CASE WHEN pg_last_wal_replay_lsn() >= ?::pg_lsn " +
+        "    OR (pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+        "        AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming')) THEN 0 " +
+        "ELSE COALESCE((EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint, 0) END";
+
+    private static ReadRouter defaultRouter;
+
+    private final ConnectionPool primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final ScheduledExecutorService checker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+
+    /**
+     * Send every read to the primary
+     * @param primary Primary pool
+     */
+    public ReadRouter(ConnectionPool primary) {
+        this(primary, Collections.emptyList(), 0, 0);
+    }
+
+    /**
+     * @param primary Primary pool; not closed by the router
+     * @param replicas Replica pools; closed with the router
+     * @param maxLagMillis Most a replica may be behind the primary to serve eventual reads
+     * @param checkIntervalMillis Time between lag checks
+     */
+    public ReadRouter(ConnectionPool primary, List<ConnectionPool> replicas, long maxLagMillis, long checkIntervalMillis) {
+        if (!replicas.isEmpty() && (maxLagMillis < 0 || checkIntervalMillis <= 0)) {
+            throw new IllegalArgumentException("Invalid replica lag settings");
+        }
+        this.primary = primary;
+        this.maxLagMillis = maxLagMillis;
+        List<Replica> list = new ArrayList<>();
+        for (ConnectionPool pool : replicas) {
+            list.add(new Replica(pool));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        if (this.replicas.isEmpty()) {
+            this.checker = null;
+            return;
+        }
+        this.checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkReplicas();
+        checker.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Routing reads to {} replicas (max lag {} ms)", this.replicas.size(), maxLagMillis);
+    }
+
+    /**
+     * Process-wide router over the default pool and the replicas listed in
+     * DB_REPLICA_HOSTS (comma-separated {@code host:port}; none by default).
+     * Replica pools take the DB_NAME, DB_USER, DB_PASS and DB_POOL_* settings of
+     * the primary. DB_REPLICA_MAX_LAG_MS (default 5000) bounds staleness and
+     * DB_REPLICA_CHECK_INTERVAL_MS (default 1000) sets how often lag is checked.
+     * @return Shared read router
+     */
+    public static synchronized ReadRouter getDefault() {
+        if (defaultRouter == null) {
+            List<ConnectionPool> replicas = new ArrayList<>();
+            for (String host : Env.getString("DB_REPLICA_HOSTS", "").split(",")) {
+                if (host.isBlank()) {
+                    continue;
+                }
+                PoolConfig config = PoolConfig.fromEnv();
+                config.setUrl("jdbc:postgresql://" + host.trim() + "/" + Env.getString("DB_NAME", "financial_db"));
+                // Connect lazily so an unreachable replica does not stop startup
+                config.setMinSize(0);
+                replicas.add(new ConnectionPool(config));
+            }
+            ReadRouter router = new ReadRouter(ConnectionPool.getDefault(), replicas,
+                Env.getLong("DB_REPLICA_MAX_LAG_MS", 5_000),
+                Env.getLong("DB_REPLICA_CHECK_INTERVAL_MS", 1_000));
+            Runtime.getRuntime().addShutdownHook(new Thread(router::close, "read-router-shutdown"));
+            defaultRouter = router;
+        }
+        return defaultRouter;
+    }
+
+    /**
+     * Borrow a connection for read-only work. Closing it returns it to its pool.
+     * @param consistency Freshness the read needs
+     * @return Replica connection, or a primary one if no replica qualifies
+     */
+    public Connection getConnection(ReadConsistency consistency) throws SQLException {
+        if (consistency == ReadConsistency.PRIMARY || replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        String primaryLsn = consistency == ReadConsistency.READ_YOUR_WRITES ? currentPrimaryLsn() : null;
+        int count = replicas.size();
+        int first = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((first + i) % count);
+            if (!replica.healthy) {
+                continue;
+            }
+            Connection connection;
+            try {
+                connection = replica.pool.getConnection();
+            } catch (SQLException e) {
+                logger.debug("Replica {} unavailable", replica.pool.getConfig().getUrl(), e);
+                continue;
+            }
+            if (primaryLsn == null || hasReplayed(connection, primaryLsn)) {
+                replicaReads.increment();
+                return connection;
+            }
+            connection.close();
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    public ConnectionPool getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return Routed reads served by a replica
+     */
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * @return Routed reads that fell back to the primary
+     */
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    /**
+     * @return Number of replicas currently eligible for eventual reads
+     */
+    public int getHealthyReplicas() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    private String currentPrimaryLsn() throws SQLException {
+        try (Connection connection = primary.getConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT pg_current_wal_lsn()::text");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static boolean hasReplayed(Connection connection, String lsn) {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT COALESCE(pg_last_wal_replay_lsn() >= ?::pg_lsn, false)")) {
+            stmt.setString(1, lsn);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            logger.debug("Replay position check failed", e);
+            return false;
+        }
+    }
+
+    private void checkReplicas() {
+        String primaryLsn;
+        try {
+            primaryLsn = currentPrimaryLsn();
+        } catch (SQLException | RuntimeException e) {
+            logger.debug("Primary WAL position unavailable for lag check", e);
+            primaryLsn = null;
+        }
+        for (Replica replica : replicas) {
+            boolean healthy;
+            long lag = -1;
+            try (Connection connection = replica.pool.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement(LAG_SQL)) {
+                stmt.setString(1, primaryLsn);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    boolean inRecovery = rs.getBoolean(1);
+                    lag = rs.getLong(2);
+                    healthy = inRecovery && lag <= maxLagMillis;
+                }
+            } catch (SQLException | RuntimeException e) {
+                logger.debug("Lag check failed for {}", replica.pool.getConfig().getUrl(), e);
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                logger.warn("Replica {} is {} (lag {} ms)", replica.pool.getConfig().getUrl(),
+                    healthy ? "back in rotation" : "out of rotation", lag);
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    private static final class Replica {
+        final ConnectionPool pool;
+        volatile boolean healthy;
+
+        Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.financial.db.pool;
+
+import org.postgresql.PGStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL.
+ *
+ * Callers get a proxy whose {@code close()} hands the statement back to the
+ * cache instead of closing it, so the driver keeps counting executions and
+ * switches to a server-side prepared statement once its prepareThreshold is
+ * reached. A connection is used by one borrower at a time, so the cache is
+ * not thread-safe; if the same SQL is prepared again while its cached
+ * statement is still open, the second caller gets an uncached statement.
+ */
+class StatementCache {
+    private final Connection physical;
+    private final int maxSize;
+    private final StatementCacheStats stats;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, StatementCacheStats stats) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.stats = stats;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null) {
+            if (cached.lease != null) {
+                stats.recordMiss();
+                return physical.prepareStatement(sql);
+            }
+            stats.recordHit();
+            return cached.checkout();
+        }
+        stats.recordMiss();
+        cached = new CachedStatement(physical.prepareStatement(sql));
+        statements.put(sql, cached);
+        evictOverflow();
+        return cached.checkout();
+    }
+
+    /**
+     * Take back every statement the last borrower left open, so a stale
+     * handle cannot reach the next borrower's statements
+     */
+    void releaseAll() throws SQLException {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.lease != null) {
+                cached.lease.closed = true;
+                cached.checkin();
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        if (statements.size() <= maxSize) {
+            return;
+        }
+        List<CachedStatement> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, CachedStatement>> eldest = statements.entrySet().iterator();
+        while (statements.size() > maxSize && eldest.hasNext()) {
+            CachedStatement cached = eldest.next().getValue();
+            if (cached.lease != null) {
+                // Still open by the current borrower; skip it rather than pull it out from under them
+                continue;
+            }
+            eldest.remove();
+            evicted.add(cached);
+        }
+        for (CachedStatement cached : evicted) {
+            stats.recordEviction();
+            try {
+                cached.statement.close();
+            } catch (SQLException e) {
+                // The statement is gone from the cache either way
+            }
+        }
+    }
+
+    private final class CachedStatement {
+        final PreparedStatement statement;
+        Lease lease;
+        boolean serverPrepared;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        PreparedStatement checkout() {
+            lease = new Lease(this);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                lease);
+        }
+
+        void checkin() throws SQLException {
+            lease = null;
+            ResultSet rs = statement.getResultSet();
+            if (rs != null) {
+                rs.close();
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            statement.setFetchSize(0);
+            statement.setMaxRows(0);
+            statement.setQueryTimeout(0);
+            if (!serverPrepared && statement.unwrap(PGStatement.class).isUseServerPrepare()) {
+                serverPrepared = true;
+                stats.recordServerPrepare();
+            }
+        }
+    }
+
+    private static final class Lease implements InvocationHandler {
+        private final CachedStatement owner;
+        private boolean closed;
+
+        Lease(CachedStatement owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        owner.checkin();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(owner.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.financial.db.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statement cache counters summed over every connection in a pool.
+ */
+public class StatementCacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder serverPrepared = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordServerPrepare() {
+        serverPrepared.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Cached statements the driver has switched to server-side prepares
+     */
+    public long getServerPrepared() {
+        return serverPrepared.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long requests = hitCount + misses.sum();
+        return requests == 0 ? 0.0 : (double) hitCount / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStats{" +
+                "hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", evictions=" + getEvictions() +
+                ", serverPrepared=" + getServerPrepared() +
+                '}';
+    }
+}
@@ -0,0 +1,325 @@
+package com.financial.db.posting;
+
+import com.financial.db.admission.AdmissionController;
+import com.financial.db.admission.Priority;
+import com.financial.db.cache.AccountCache;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit write path for deposits and withdrawals.
+ *
+ * Requests are collected until the group reaches maxBatchSize or
+ * maxDelayMicros have passed since its first request, then applied as one
+ * JDBC batch in one database transaction, so the whole group shares a
+ * single WAL flush. The group is applied in account number order, each
+ * account's requests in the order they were submitted, so it locks rows in
+ * the same order as transfers and batch inserts and cannot deadlock with
+ * them. Futures complete only after the commit. A request that is refused
+ * (missing account, insufficient funds) or raises an error fails on its
+ * own; the rest of the group still commits.
+ *
+ * Larger batches and longer delays raise throughput at the cost of latency.
+ */
+public class GroupCommitWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    // One statement for both directions keeps the group in one batch, in the order it is bound.
+    // Parameters: delta, account number, unconditional, delta, delta, type, description
+    private static final String POSTING_SQL =
+        "WITH changed AS (" +
+        "    UPDATE accounts SET balance = balance + ? " +
+        "    WHERE account_number = ? AND (? OR balance + ? >= 0) RETURNING account_number) " +
+        "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+        "SELECT account_number, ?, ?, NOW(), ? FROM changed";
+
+    private static final Request SHUTDOWN = new Request(null, null, null, null);
+
+    private final ConnectionPool pool;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request> queue;
+    private final Thread committer;
+    private volatile boolean closed;
+
+    /**
+     * Configure from GROUP_COMMIT_MAX_BATCH (default 64), GROUP_COMMIT_MAX_DELAY_US
+     * (default 500) and GROUP_COMMIT_QUEUE_CAPACITY (default 10000)
+     */
+    public GroupCommitWriter() {
+        this(ConnectionPool.getDefault(),
+             Env.getInt("GROUP_COMMIT_MAX_BATCH", 64),
+             Env.getLong("GROUP_COMMIT_MAX_DELAY_US", 500),
+             Env.getInt("GROUP_COMMIT_QUEUE_CAPACITY", 10_000));
+    }
+
+    /**
+     * @param pool Pool to borrow the committing connection from
+     * @param maxBatchSize Most requests applied in one database transaction
+     * @param maxDelayMicros Longest a request waits for others to join its group
+     * @param queueCapacity Most requests waiting to be grouped
+     */
+    public GroupCommitWriter(ConnectionPool pool, int maxBatchSize, long maxDelayMicros, int queueCapacity) {
+        if (maxBatchSize < 1 || maxDelayMicros < 0 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid group commit settings");
+        }
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.committer = new Thread(this::run, "group-commit-writer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * @return Future completed after the deposit's group commits
+     */
+    public CompletableFuture<Void> deposit(String accountNumber, BigDecimal amount, String description) {
+        return enqueue(new Request(PostingCommand.Type.DEPOSIT, accountNumber, amount, description));
+    }
+
+    /**
+     * @return Future completed after the withdrawal's group commits, or failed if it was refused
+     */
+    public CompletableFuture<Void> withdraw(String accountNumber, BigDecimal amount, String description) {
+        return enqueue(new Request(PostingCommand.Type.WITHDRAWAL, accountNumber, amount, description));
+    }
+
+    /**
+     * Queue a deposit or withdrawal command; transfers are not group-committed
+     */
+    public CompletableFuture<Void> submit(PostingCommand command) {
+        switch (command.getType()) {
+            case DEPOSIT:
+                return deposit(command.getAccountNumber(), command.getAmount(), command.getDescription());
+            case WITHDRAWAL:
+                return withdraw(command.getAccountNumber(), command.getAmount(), command.getDescription());
+            default:
+                throw new IllegalArgumentException("Group commit only applies deposits and withdrawals");
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Request request) {
+        if (closed) {
+            request.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed"));
+        } else if (!queue.offer(request)) {
+            request.result.completeExceptionally(new RejectedExecutionException("Group commit queue is full"));
+        } else if (closed && !committer.isAlive() && queue.remove(request)) {
+            // The committer stopped between the closed check and the offer
+            request.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed"));
+        }
+        return request.result;
+    }
+
+    private void run() {
+        List<Request> group = new ArrayList<>(maxBatchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                stopping = collect(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopping = true;
+            }
+            if (!group.isEmpty()) {
+                commitGroup(group);
+                group.clear();
+            }
+        }
+        Request late;
+        while ((late = queue.poll()) != null) {
+            if (late != SHUTDOWN) {
+                late.result.completeExceptionally(new RejectedExecutionException("Group commit writer is closed"));
+            }
+        }
+    }
+
+    /**
+     * Fill the group from the queue
+     * @return true once the shutdown marker has been reached
+     */
+    private boolean collect(List<Request> group) throws InterruptedException {
+        Request first = queue.take();
+        if (first == SHUTDOWN) {
+            return true;
+        }
+        group.add(first);
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (group.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return false;
+            }
+            if (next == SHUTDOWN) {
+                return true;
+            }
+            group.add(next);
+        }
+        return false;
+    }
+
+    private void commitGroup(List<Request> group) {
+        // Lock rows in account order like transfer() and MultiRowInsert; the sort is stable, so each
+        // account's requests keep their submission order
+        group.sort(Comparator.comparing(request -> request.accountNumber));
+        // Per request: the error it failed with, and whether the conditional update refused it
+        RuntimeException[] failures = new RuntimeException[group.size()];
+        boolean[] refused = new boolean[group.size()];
+        try (Connection connection = AdmissionController.withStatementTimeout(pool.getConnection(), Priority.POSTING)) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(POSTING_SQL)) {
+                try {
+                    for (Request request : group) {
+                        bind(stmt, request);
+                        stmt.addBatch();
+                    }
+                    int[] counts = stmt.executeBatch();
+                    for (int i = 0; i < counts.length; i++) {
+                        refused[i] = counts[i] == 0;
+                    }
+                } catch (SQLException e) {
+                    // One bad request aborted the batch; replay each under its own savepoint
+                    connection.rollback();
+                    stmt.clearBatch();
+                    applyIndividually(connection, stmt, group, failures, refused);
+                }
+                explainRefusals(connection, group, failures, refused);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            logger.error("Group commit of {} postings failed", group.size(), e);
+            RuntimeException failure = new RuntimeException("Group commit failed", e);
+            for (Request request : group) {
+                request.result.completeExceptionally(failure);
+            }
+            return;
+        }
+
+        Set<String> changed = new HashSet<>();
+        for (int i = 0; i < group.size(); i++) {
+            Request request = group.get(i);
+            if (failures[i] == null) {
+                changed.add(request.accountNumber);
+                request.result.complete(null);
+            } else {
+                request.result.completeExceptionally(failures[i]);
+            }
+        }
+        for (String accountNumber : changed) {
+            AccountCache.getDefault().invalidate(accountNumber);
+        }
+        logger.debug("Group committed {} postings ({} refused)", group.size(), group.size() - changed.size());
+    }
+
+    private static void applyIndividually(Connection connection, PreparedStatement stmt, List<Request> group,
+                                          RuntimeException[] failures, boolean[] refused) throws SQLException {
+        for (int i = 0; i < group.size(); i++) {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                bind(stmt, group.get(i));
+                refused[i] = stmt.executeUpdate() == 0;
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                failures[i] = new RuntimeException(group.get(i).type == PostingCommand.Type.DEPOSIT ?
+                    "Deposit failed" : "Withdrawal failed", e);
+            }
+        }
+    }
+
+    /**
+     * Record why each refused request was refused, looking up all of the
+     * group's refused accounts in one query
+     */
+    private static void explainRefusals(Connection connection, List<Request> group,
+                                        RuntimeException[] failures, boolean[] refused) throws SQLException {
+        Set<String> accountNumbers = new HashSet<>();
+        for (int i = 0; i < refused.length; i++) {
+            if (refused[i]) {
+                accountNumbers.add(group.get(i).accountNumber);
+            }
+        }
+        if (accountNumbers.isEmpty()) {
+            return;
+        }
+        Set<String> existing = new HashSet<>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT account_number FROM accounts WHERE account_number = ANY (?)")) {
+            stmt.setArray(1, connection.createArrayOf("varchar", accountNumbers.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+        }
+        for (int i = 0; i < refused.length; i++) {
+            if (refused[i]) {
+                failures[i] = new RuntimeException(existing.contains(group.get(i).accountNumber) ?
+                    "Insufficient funds" : "Account not found");
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, Request request) throws SQLException {
+        boolean deposit = request.type == PostingCommand.Type.DEPOSIT;
+        BigDecimal delta = deposit ? request.amount : request.amount.negate();
+        stmt.setBigDecimal(1, delta);
+        stmt.setString(2, request.accountNumber);
+        stmt.setBoolean(3, deposit);
+        stmt.setBigDecimal(4, delta);
+        stmt.setBigDecimal(5, delta);
+        stmt.setString(6, deposit ? "DEPOSIT" : "WITHDRAWAL");
+        stmt.setString(7, request.description);
+    }
+
+    /**
+     * Stop accepting requests, commit everything already queued, then stop the committer
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (!closed) {
+            closed = true;
+            queue.put(SHUTDOWN);
+            committer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private static final class Request {
+        final PostingCommand.Type type;
+        final String accountNumber;
+        final BigDecimal amount;
+        final String description;
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Request(PostingCommand.Type type, String accountNumber, BigDecimal amount, String description) {
+            this.type = type;
+            this.accountNumber = accountNumber;
+            this.amount = amount;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.financial.db.posting;
+
+import java.math.BigDecimal;
+
+/**
+ * A deposit, withdrawal or transfer to be applied by the {@link PostingEngine}.
+ * The account number decides which lane runs the command; for transfers it
+ * is the account being debited.
+ */
+public class PostingCommand {
+    public enum Type {
+        DEPOSIT, WITHDRAWAL, TRANSFER
+    }
+
+    private final Type type;
+    private final String accountNumber;
+    private final String counterpartyAccountNumber;
+    private final BigDecimal amount;
+    private final String description;
+
+    private PostingCommand(Type type, String accountNumber, String counterpartyAccountNumber,
+                           BigDecimal amount, String description) {
+        this.type = type;
+        this.accountNumber = accountNumber;
+        this.counterpartyAccountNumber = counterpartyAccountNumber;
+        this.amount = amount;
+        this.description = description;
+    }
+
+    public static PostingCommand deposit(String accountNumber, BigDecimal amount, String description) {
+        return new PostingCommand(Type.DEPOSIT, accountNumber, null, amount, description);
+    }
+
+    public static PostingCommand withdrawal(String accountNumber, BigDecimal amount, String description) {
+        return new PostingCommand(Type.WITHDRAWAL, accountNumber, null, amount, description);
+    }
+
+    public static PostingCommand transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount,
+                                          String description) {
+        return new PostingCommand(Type.TRANSFER, fromAccountNumber, toAccountNumber, amount, description);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+
+    /**
+     * @return Account credited by a transfer, or null for deposits and withdrawals
+     */
+    public String getCounterpartyAccountNumber() {
+        return counterpartyAccountNumber;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return "PostingCommand{" +
+                "type=" + type +
+                ", accountNumber='" + accountNumber + '\'' +
+                (counterpartyAccountNumber != null ? ", counterpartyAccountNumber='" + counterpartyAccountNumber + '\'' : "") +
+                ", amount=" + amount +
+                '}';
+    }
+}
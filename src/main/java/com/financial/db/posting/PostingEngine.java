@@ -0,0 +1,212 @@
+package com.financial.db.posting;
+
+import com.financial.db.FinancialDatabaseManager;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies postings on a fixed set of lanes, chosen by hashing the account
+ * number. Each lane runs its commands one at a time, so postings to one
+ * account are applied in submission order and never contend with each
+ * other for the row lock, while different accounts proceed in parallel.
+ *
+ * Lane workers are virtual threads when the runtime supports them and
+ * daemon platform threads otherwise. Each lane's queue is bounded; when it
+ * is full, submit fails fast instead of blocking the caller.
+ */
+public class PostingEngine implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PostingEngine.class);
+
+    private final FinancialDatabaseManager manager;
+    private final Lane[] lanes;
+    private volatile boolean closed;
+
+    /**
+     * Size lanes from POSTING_LANES (default 8) and POSTING_QUEUE_CAPACITY (default 1024)
+     * @param manager Manager that applies the postings
+     */
+    public PostingEngine(FinancialDatabaseManager manager) {
+        this(manager, Env.getInt("POSTING_LANES", 8), Env.getInt("POSTING_QUEUE_CAPACITY", 1024));
+    }
+
+    /**
+     * @param manager Manager that applies the postings
+     * @param laneCount Number of lanes; each holds at most one pooled connection at a time
+     * @param queueCapacity Maximum queued commands per lane
+     */
+    public PostingEngine(FinancialDatabaseManager manager, int laneCount, int queueCapacity) {
+        if (laneCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Lane count and queue capacity must be positive");
+        }
+        this.manager = manager;
+        this.lanes = new Lane[laneCount];
+        ThreadFactory threadFactory = workerThreadFactory();
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+            Thread worker = threadFactory.newThread(lanes[i]);
+            worker.setName("posting-lane-" + i);
+            worker.start();
+        }
+        logger.info("Posting engine started with {} lanes", laneCount);
+    }
+
+    /**
+     * Queue a command on its account's lane
+     * @param command Posting to apply
+     * @return Future completed once the posting has committed, or failed with its error;
+     *         failed with {@link RejectedExecutionException} if the lane is full or the engine is closed
+     */
+    public CompletableFuture<Void> submit(PostingCommand command) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new RejectedExecutionException("Posting engine is closed"));
+            return result;
+        }
+        Lane lane = lanes[laneFor(command.getAccountNumber())];
+        Task task = new Task(command, result);
+        if (!lane.queue.offer(task)) {
+            result.completeExceptionally(new RejectedExecutionException(
+                "Posting lane " + lane.index + " is full"));
+        } else if (closed && lane.stopped.getCount() == 0 && lane.queue.remove(task)) {
+            // The lane shut down between the closed check and the offer
+            result.completeExceptionally(new RejectedExecutionException("Posting engine is closed"));
+        }
+        return result;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * @return Commands waiting across all lanes
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    int laneFor(String accountNumber) {
+        // Spread the hash so account numbers differing only in trailing digits land on different lanes
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, lanes.length);
+    }
+
+    private void apply(PostingCommand command) {
+        switch (command.getType()) {
+            case DEPOSIT:
+                manager.deposit(command.getAccountNumber(), command.getAmount(), command.getDescription());
+                break;
+            case WITHDRAWAL:
+                manager.withdraw(command.getAccountNumber(), command.getAmount(), command.getDescription());
+                break;
+            case TRANSFER:
+                manager.transfer(command.getAccountNumber(), command.getCounterpartyAccountNumber(),
+                    command.getAmount(), command.getDescription());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown posting type: " + command.getType());
+        }
+    }
+
+    /**
+     * Stop accepting commands, finish everything already queued, and wait for the lanes to drain
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Lane lane : lanes) {
+            lane.queue.put(Task.SHUTDOWN);
+        }
+        for (Lane lane : lanes) {
+            lane.stopped.await(30, TimeUnit.SECONDS);
+        }
+        logger.info("Posting engine stopped");
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        try {
+            // Thread.ofVirtual() exists from Java 21; looked up reflectively so the code still runs on 17
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    private static final class Task {
+        static final Task SHUTDOWN = new Task(null, null);
+
+        final PostingCommand command;
+        final CompletableFuture<Void> result;
+
+        Task(PostingCommand command, CompletableFuture<Void> result) {
+            this.command = command;
+            this.result = result;
+        }
+    }
+
+    private final class Lane implements Runnable {
+        final int index;
+        final BlockingQueue<Task> queue;
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Task task = queue.take();
+                    if (task == Task.SHUTDOWN) {
+                        return;
+                    }
+                    try {
+                        apply(task.command);
+                        task.result.complete(null);
+                    } catch (RuntimeException e) {
+                        task.result.completeExceptionally(e);
+                    } catch (Error e) {
+                        // Keep the lane running; commands queued behind this one would never complete otherwise
+                        logger.error("Posting on lane {} failed", index, e);
+                        task.result.completeExceptionally(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Anything that raced in behind the shutdown marker is refused rather than left hanging
+                Task late;
+                while ((late = queue.poll()) != null) {
+                    if (late != Task.SHUTDOWN) {
+                        late.result.completeExceptionally(new RejectedExecutionException("Posting engine is closed"));
+                    }
+                }
+                stopped.countDown();
+            }
+        }
+    }
+}
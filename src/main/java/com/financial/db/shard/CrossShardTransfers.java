@@ -0,0 +1,284 @@
+package com.financial.db.shard;
+
+import com.financial.db.admission.AdmissionController;
+import com.financial.db.admission.Priority;
+import com.financial.db.cache.AccountCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers between accounts on different shards, using a transactional outbox.
+ *
+ * The payer's shard debits the account, records the outgoing ledger leg and
+ * writes an outbox row in one local transaction. Delivery then credits the
+ * payee on its shard, recording the transfer id in transfer_inbox in the
+ * same transaction so a redelivery is a no-op, and finally marks the outbox
+ * row delivered. If the payee no longer exists the debit is reversed the
+ * same way. Delivery is attempted straight away and retried by
+ * {@link #relayPending()} until it succeeds, so money is never created or
+ * lost, only in flight for a while.
+ */
+public class CrossShardTransfers implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CrossShardTransfers.class);
+
+    private static final String DEBIT_SQL =
+        "WITH debited AS (" +
+        "    UPDATE accounts SET balance = balance - ? " +
+        "    WHERE account_number = ? AND balance >= ? RETURNING account_number), " +
+        "ledger AS (" +
+        "    INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+        "    SELECT account_number, ?, 'TRANSFER', NOW(), ? FROM debited) " +
+        "INSERT INTO transfer_outbox (transfer_id, from_account, to_account, amount, description) " +
+        "SELECT ?, account_number, ?, ?, ? FROM debited";
+
+    private static final String RECEIVE_SQL =
+        "INSERT INTO transfer_inbox (transfer_id, account_number) " +
+        "SELECT ?, account_number FROM accounts WHERE account_number = ? " +
+        "ON CONFLICT (transfer_id, account_number) DO NOTHING";
+
+    private static final String CREDIT_SQL =
+        "WITH credited AS (" +
+        "    UPDATE accounts SET balance = balance + ? WHERE account_number = ? RETURNING account_number) " +
+        "INSERT INTO transactions (account_number, amount, type, timestamp, description) " +
+        "SELECT account_number, ?, 'TRANSFER', NOW(), ? FROM credited";
+
+    private static final String PENDING_SQL =
+        "SELECT transfer_id, from_account, to_account, amount, description FROM transfer_outbox " +
+        "WHERE status = 'PENDING' ORDER BY created_at LIMIT ?";
+
+    private static final String COMPLETE_SQL =
+        "UPDATE transfer_outbox SET status = ? WHERE transfer_id = ? AND status = 'PENDING'";
+
+    private static final int RELAY_BATCH_SIZE = 100;
+
+    private final ShardedDatabase shards;
+    private final AccountCache accountCache;
+    private ScheduledExecutorService relay;
+
+    public CrossShardTransfers(ShardedDatabase shards, AccountCache accountCache) {
+        this.shards = shards;
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * Debit the payer and queue the credit, then try to deliver it at once
+     * @return Transfer id
+     * @throws RuntimeException if an account does not exist or the payer is short of funds
+     */
+    public UUID transfer(String fromAccountNumber, String toAccountNumber, BigDecimal amount,
+                         String description) throws SQLException {
+        // Refuse obviously bad transfers before touching the payer; delivery still copes if the payee disappears
+        try (Connection connection = posting(shards.getConnection(toAccountNumber))) {
+            if (!accountExists(connection, toAccountNumber)) {
+                throw new RuntimeException("Account not found");
+            }
+        }
+
+        Transfer transfer = new Transfer(UUID.randomUUID(), fromAccountNumber, toAccountNumber, amount, description);
+        int source = shards.shardOf(fromAccountNumber);
+        try (Connection connection = posting(shards.getConnection(fromAccountNumber));
+             PreparedStatement stmt = connection.prepareStatement(DEBIT_SQL)) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, fromAccountNumber);
+            stmt.setBigDecimal(3, amount);
+            stmt.setBigDecimal(4, amount.negate());
+            stmt.setString(5, description);
+            stmt.setObject(6, transfer.id);
+            stmt.setString(7, toAccountNumber);
+            stmt.setBigDecimal(8, amount);
+            stmt.setString(9, description);
+            if (stmt.executeUpdate() == 0) {
+                throw new RuntimeException(accountExists(connection, fromAccountNumber) ?
+                    "Insufficient funds" : "Account not found");
+            }
+        }
+        accountCache.invalidate(fromAccountNumber);
+
+        try {
+            deliver(source, transfer);
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Transfer {} debited but not yet delivered; the relay will retry", transfer.id, e);
+        }
+        return transfer.id;
+    }
+
+    /**
+     * Deliver every pending transfer in every shard's outbox
+     * @return Number of transfers completed
+     */
+    public int relayPending() throws SQLException {
+        int completed = 0;
+        for (int shard = 0; shard < shards.getShardCount(); shard++) {
+            for (Transfer transfer : pending(shard)) {
+                try {
+                    deliver(shard, transfer);
+                    completed++;
+                } catch (SQLException | RuntimeException e) {
+                    logger.warn("Failed to deliver transfer {}; will retry", transfer.id, e);
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Relay pending transfers in the background
+     * @param intervalMillis Time between relay passes
+     */
+    public synchronized void start(long intervalMillis) {
+        if (relay != null) {
+            throw new IllegalStateException("Transfer relay already started");
+        }
+        relay = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "transfer-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relay.scheduleWithFixedDelay(() -> {
+            try {
+                relayPending();
+            } catch (SQLException | RuntimeException e) {
+                logger.warn("Transfer relay pass failed", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (relay != null) {
+            relay.shutdownNow();
+            relay = null;
+        }
+    }
+
+    private void deliver(int source, Transfer transfer) throws SQLException {
+        String status;
+        if (credit(transfer.id, transfer.toAccount, transfer.amount, transfer.description)) {
+            status = "DELIVERED";
+        } else {
+            // The payee is gone; give the money back to the payer
+            String reversal = transfer.description != null ? "Reversal: " + transfer.description : "Reversal";
+            if (!credit(transfer.id, transfer.fromAccount, transfer.amount, reversal)) {
+                throw new SQLException("Cannot reverse transfer " + transfer.id + ": payer " +
+                    transfer.fromAccount + " no longer exists");
+            }
+            status = "REVERSED";
+        }
+        try (Connection connection = posting(shards.getShard(source).getConnection());
+             PreparedStatement stmt = connection.prepareStatement(COMPLETE_SQL)) {
+            stmt.setString(1, status);
+            stmt.setObject(2, transfer.id);
+            stmt.executeUpdate();
+        }
+        logger.info("Transfer {} of {} from {} to {} {}", transfer.id, transfer.amount,
+            transfer.fromAccount, transfer.toAccount, status.toLowerCase());
+    }
+
+    /**
+     * Apply a transfer's credit at most once
+     * @return False if the account does not exist
+     */
+    private boolean credit(UUID transferId, String accountNumber, BigDecimal amount,
+                           String description) throws SQLException {
+        try (Connection connection = posting(shards.getConnection(accountNumber))) {
+            connection.setAutoCommit(false);
+            try {
+                boolean received;
+                try (PreparedStatement stmt = connection.prepareStatement(RECEIVE_SQL)) {
+                    stmt.setObject(1, transferId);
+                    stmt.setString(2, accountNumber);
+                    received = stmt.executeUpdate() == 1;
+                }
+                if (!received) {
+                    connection.rollback();
+                    // Either applied already or the account does not exist
+                    return alreadyReceived(connection, transferId, accountNumber);
+                }
+                try (PreparedStatement stmt = connection.prepareStatement(CREDIT_SQL)) {
+                    stmt.setBigDecimal(1, amount);
+                    stmt.setString(2, accountNumber);
+                    stmt.setBigDecimal(3, amount);
+                    stmt.setString(4, description);
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        accountCache.invalidate(accountNumber);
+        return true;
+    }
+
+    private List<Transfer> pending(int shard) throws SQLException {
+        List<Transfer> transfers = new ArrayList<>();
+        try (Connection connection = posting(shards.getShard(shard).getConnection());
+             PreparedStatement stmt = connection.prepareStatement(PENDING_SQL)) {
+            stmt.setInt(1, RELAY_BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    transfers.add(new Transfer(rs.getObject("transfer_id", UUID.class), rs.getString("from_account"),
+                        rs.getString("to_account"), rs.getBigDecimal("amount"), rs.getString("description")));
+                }
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * Apply the posting statement timeout, as these connections bypass admission control
+     */
+    private static Connection posting(Connection connection) throws SQLException {
+        return AdmissionController.withStatementTimeout(connection, Priority.POSTING);
+    }
+
+    private static boolean alreadyReceived(Connection connection, UUID transferId,
+                                           String accountNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT 1 FROM transfer_inbox WHERE transfer_id = ? AND account_number = ?")) {
+            stmt.setObject(1, transferId);
+            stmt.setString(2, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean accountExists(Connection connection, String accountNumber) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM accounts WHERE account_number = ?")) {
+            stmt.setString(1, accountNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static final class Transfer {
+        final UUID id;
+        final String fromAccount;
+        final String toAccount;
+        final BigDecimal amount;
+        final String description;
+
+        Transfer(UUID id, String fromAccount, String toAccount, BigDecimal amount, String description) {
+            this.id = id;
+            this.fromAccount = fromAccount;
+            this.toAccount = toAccount;
+            this.amount = amount;
+            this.description = description;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.financial.db.shard;
+
+import java.util.Arrays;
+
+/**
+ * Immutable assignment of accounts to shards.
+ *
+ * Account numbers hash to one of {@value #BUCKETS} buckets, and each bucket
+ * is owned by one shard. The hash never changes, so rebalancing only moves
+ * whole buckets between shards. A bucket that is being moved is marked, and
+ * routing refuses work for it until the move is published.
+ */
+public final class ShardMap {
+    /**
+     * Number of hash buckets; also the most shards a map can spread accounts over
+     */
+    public static final int BUCKETS = 1024;
+
+    private final int[] owners;
+    private final boolean[] moving;
+
+    private ShardMap(int[] owners, boolean[] moving) {
+        this.owners = owners;
+        this.moving = moving;
+    }
+
+    /**
+     * Spread the buckets evenly over the shards
+     * @param shardCount Number of shards
+     * @return New map
+     */
+    public static ShardMap uniform(int shardCount) {
+        if (shardCount < 1 || shardCount > BUCKETS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + BUCKETS + ": " + shardCount);
+        }
+        int[] owners = new int[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            owners[bucket] = bucket % shardCount;
+        }
+        return new ShardMap(owners, new boolean[BUCKETS]);
+    }
+
+    static ShardMap of(int[] owners, boolean[] moving) {
+        if (owners.length != BUCKETS || moving.length != BUCKETS) {
+            throw new IllegalArgumentException("Shard map must cover " + BUCKETS + " buckets");
+        }
+        return new ShardMap(owners.clone(), moving.clone());
+    }
+
+    /**
+     * Stable FNV-1a hash of the account number, independent of the JVM
+     * @param accountNumber Account number
+     * @return Bucket the account belongs to
+     */
+    public static int bucketOf(String accountNumber) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            hash ^= accountNumber.charAt(i);
+            hash *= 0x01000193;
+        }
+        return Math.floorMod(hash, BUCKETS);
+    }
+
+    public int shardOf(String accountNumber) {
+        return owners[bucketOf(accountNumber)];
+    }
+
+    public int ownerOf(int bucket) {
+        return owners[bucket];
+    }
+
+    public boolean isMoving(int bucket) {
+        return moving[bucket];
+    }
+
+    /**
+     * @return Highest shard index that owns a bucket, plus one
+     */
+    public int getShardCount() {
+        int highest = 0;
+        for (int owner : owners) {
+            highest = Math.max(highest, owner);
+        }
+        return highest + 1;
+    }
+
+    /**
+     * @param shard Shard index
+     * @return Number of buckets the shard owns
+     */
+    public int bucketCount(int shard) {
+        int count = 0;
+        for (int owner : owners) {
+            if (owner == shard) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    ShardMap withMoving(int bucket, boolean isMoving) {
+        boolean[] copy = moving.clone();
+        copy[bucket] = isMoving;
+        return new ShardMap(owners, copy);
+    }
+
+    ShardMap withOwner(int bucket, int shard) {
+        int[] copy = owners.clone();
+        copy[bucket] = shard;
+        boolean[] movingCopy = moving.clone();
+        movingCopy[bucket] = false;
+        return new ShardMap(copy, movingCopy);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ShardMap)) {
+            return false;
+        }
+        ShardMap other = (ShardMap) o;
+        return Arrays.equals(owners, other.owners) && Arrays.equals(moving, other.moving);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(owners) + Arrays.hashCode(moving);
+    }
+}
@@ -0,0 +1,230 @@
+package com.financial.db.shard;
+
+import com.financial.db.pool.ConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Moves hash buckets between shards while the application keeps running.
+ *
+ * A move first marks the bucket as moving and waits two map refresh
+ * intervals, so every process stops routing work to it. It then locks the
+ * source tables against writes, copies the bucket's accounts, transactions,
+ * aggregates, hot account slots and received transfers to the target, commits there, publishes
+ * the new owner and deletes the rows from the source. Only the moved bucket
+ * refuses work during the move; other buckets on the source shard wait only
+ * while the copy holds the table lock.
+ *
+ * A move interrupted after publishing leaves stale copies on the source
+ * shard, which routing ignores but scatter-gather reports would count twice;
+ * moving the bucket back and forth again clears them.
+ */
+public class ShardRebalancer {
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    // Parents before children when copying, children before parents when deleting
+    private static final String[] COPIED_TABLES = { "accounts", "transactions", "transfer_inbox" };
+    private static final String[] DELETED_TABLES = { "transfer_inbox", "account_balance_slots", "hot_accounts",
+        "balance_snapshots", "account_balances", "transactions", "accounts" };
+    // Copied after the ledger so the target's trigger does not post the copied rows into the slots
+    private static final String[] HOT_ACCOUNT_TABLES = { "hot_accounts", "account_balance_slots" };
+
+    private static final int COPY_BATCH_SIZE = 1000;
+
+    private final ShardedDatabase shards;
+
+    public ShardRebalancer(ShardedDatabase shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Move buckets one at a time from the shard with the most buckets to the
+     * one with the fewest until they differ by at most one, e.g. after adding
+     * an empty shard
+     * @return Number of buckets moved
+     */
+    public int rebalance() throws SQLException {
+        int moved = 0;
+        while (true) {
+            ShardMap map = shards.getShardMap();
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 1; shard < shards.getShardCount(); shard++) {
+                if (map.bucketCount(shard) > map.bucketCount(fullest)) {
+                    fullest = shard;
+                }
+                if (map.bucketCount(shard) < map.bucketCount(emptiest)) {
+                    emptiest = shard;
+                }
+            }
+            if (map.bucketCount(fullest) - map.bucketCount(emptiest) <= 1) {
+                return moved;
+            }
+            for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+                if (map.ownerOf(bucket) == fullest) {
+                    moveBucket(bucket, emptiest);
+                    moved++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move one bucket and everything in it to another shard
+     * @param bucket Bucket to move
+     * @param target Shard that will own it
+     */
+    public void moveBucket(int bucket, int target) throws SQLException {
+        if (target < 0 || target >= shards.getShardCount()) {
+            throw new IllegalArgumentException("No shard " + target);
+        }
+        int source = shards.getShardMap().ownerOf(bucket);
+        if (source == target) {
+            return;
+        }
+        shards.publish(bucket, shards.getShardMap().withMoving(bucket, true));
+        try {
+            Thread.sleep(2 * shards.getRefreshIntervalMillis());
+            copy(bucket, source, target);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shards.publish(bucket, shards.getShardMap().withMoving(bucket, false));
+            throw new SQLException("Interrupted while moving bucket " + bucket, e);
+        } catch (SQLException | RuntimeException e) {
+            shards.publish(bucket, shards.getShardMap().withMoving(bucket, false));
+            throw e;
+        }
+    }
+
+    private void copy(int bucket, int source, int target) throws SQLException {
+        try (Connection from = shards.getShard(source).getConnection();
+             Connection to = shards.getShard(target).getConnection()) {
+            // A bucket can take longer than any statement timeout a previous borrower left behind
+            ConnectionPool.setStatementTimeout(from, 0);
+            ConnectionPool.setStatementTimeout(to, 0);
+            from.setAutoCommit(false);
+            to.setAutoCommit(false);
+            try {
+                try (Statement stmt = from.createStatement()) {
+                    stmt.execute("LOCK TABLE accounts, transactions, transfer_inbox, account_balance_slots, " +
+                        "balance_snapshots IN SHARE MODE");
+                }
+                List<String> accounts = accountsIn(from, bucket);
+
+                // Clear leftovers of an earlier, interrupted move
+                delete(to, accounts);
+                long rows = 0;
+                for (String table : COPIED_TABLES) {
+                    rows += copyRows(from, to, table, accounts);
+                }
+                // Inserting the transactions rebuilt the aggregates from what is left of the
+                // ledger; the source's aggregates also cover retired partitions, so take those
+                deleteRows(to, "account_balances", accounts);
+                rows += copyRows(from, to, "account_balances", accounts);
+                // The target has no snapshots for these accounts yet, so its trigger left them alone
+                rows += copyRows(from, to, "balance_snapshots", accounts);
+                for (String table : HOT_ACCOUNT_TABLES) {
+                    rows += copyRows(from, to, table, accounts);
+                }
+                to.commit();
+
+                shards.publish(bucket, shards.getShardMap().withOwner(bucket, target));
+                delete(from, accounts);
+                from.commit();
+                logger.info("Moved bucket {} ({} accounts, {} rows) from shard {} to shard {}",
+                    bucket, accounts.size(), rows, source, target);
+            } catch (SQLException | RuntimeException e) {
+                to.rollback();
+                from.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static List<String> accountsIn(Connection connection, int bucket) throws SQLException {
+        List<String> accounts = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT account_number FROM accounts")) {
+            stmt.setFetchSize(COPY_BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String accountNumber = rs.getString(1);
+                    if (ShardMap.bucketOf(accountNumber) == bucket) {
+                        accounts.add(accountNumber);
+                    }
+                }
+            }
+        }
+        return accounts;
+    }
+
+    private static void delete(Connection connection, List<String> accounts) throws SQLException {
+        for (String table : DELETED_TABLES) {
+            deleteRows(connection, table, accounts);
+        }
+    }
+
+    private static void deleteRows(Connection connection, String table, List<String> accounts) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "DELETE FROM " + table + " WHERE account_number = ANY (?)")) {
+            stmt.setArray(1, accountArray(connection, accounts));
+            stmt.executeUpdate();
+        }
+    }
+
+    private static long copyRows(Connection from, Connection to, String table, List<String> accounts) throws SQLException {
+        try (PreparedStatement select = from.prepareStatement(
+                "SELECT * FROM " + table + " WHERE account_number = ANY (?)")) {
+            select.setFetchSize(COPY_BATCH_SIZE);
+            select.setArray(1, accountArray(from, accounts));
+            try (ResultSet rs = select.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                int columns = meta.getColumnCount();
+                // Account ids are only unique per shard, so moved accounts get new ones;
+                // transaction ids come from disjoint per-shard ranges and are kept
+                List<Integer> copied = new ArrayList<>();
+                StringJoiner names = new StringJoiner(", ");
+                StringJoiner placeholders = new StringJoiner(", ");
+                for (int column = 1; column <= columns; column++) {
+                    if (table.equals("accounts") && meta.getColumnName(column).equals("id")) {
+                        continue;
+                    }
+                    copied.add(column);
+                    names.add(meta.getColumnName(column));
+                    placeholders.add("?");
+                }
+                String sql = "INSERT INTO " + table + " (" + names + ") VALUES (" + placeholders + ")";
+
+                long rows = 0;
+                try (PreparedStatement insert = to.prepareStatement(sql)) {
+                    while (rs.next()) {
+                        for (int i = 0; i < copied.size(); i++) {
+                            insert.setObject(i + 1, rs.getObject(copied.get(i)));
+                        }
+                        insert.addBatch();
+                        if (++rows % COPY_BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                return rows;
+            }
+        }
+    }
+
+    private static Array accountArray(Connection connection, List<String> accounts) throws SQLException {
+        return connection.createArrayOf("varchar", accounts.toArray());
+    }
+}
@@ -0,0 +1,317 @@
+package com.financial.db.shard;
+
+import com.financial.db.cache.AccountCache;
+import com.financial.db.pool.ConnectionPool;
+import com.financial.db.pool.PoolConfig;
+import com.financial.db.util.Env;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of PostgreSQL databases with the same schema, each holding the
+ * accounts of the hash buckets it owns together with their transactions.
+ *
+ * The bucket assignment lives in the shard_buckets table of the first shard,
+ * which is created with a uniform spread on first use. Every process reloads
+ * it at the refresh interval, so a bucket move published by one process
+ * reaches the others within that time.
+ */
+public class ShardedDatabase implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedDatabase.class);
+
+    private static final String LOAD_MAP_SQL = "SELECT bucket, shard, moving FROM shard_buckets";
+    private static final String SAVE_BUCKET_SQL =
+        "INSERT INTO shard_buckets (bucket, shard, moving) VALUES (?, ?, ?) " +
+        "ON CONFLICT (bucket) DO UPDATE SET shard = EXCLUDED.shard, moving = EXCLUDED.moving";
+    private static final String CREATE_BUCKET_SQL =
+        "INSERT INTO shard_buckets (bucket, shard, moving) VALUES (?, ?, false) ON CONFLICT DO NOTHING";
+
+    // Each shard hands out transaction ids from its own range so moved rows keep their ids
+    private static final int ID_RANGE_BITS = 48;
+    private static final String RESERVE_ID_RANGE_SQL =
+        "SELECT setval(pg_get_serial_sequence('transactions', 'id'), " +
+        "GREATEST(nextval(pg_get_serial_sequence('transactions', 'id')), ?))";
+
+    private static ShardedDatabase defaultShards;
+    private static boolean defaultResolved;
+
+    @FunctionalInterface
+    public interface ShardQuery<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final List<ConnectionPool> shards;
+    private final boolean ownsExtraShards;
+    private final long refreshIntervalMillis;
+    private final ExecutorService scatter;
+    private final ScheduledExecutorService refresher;
+    private volatile ShardMap map;
+
+    /**
+     * @param shards One pool per shard; the first holds the shard catalog
+     * @param refreshIntervalMillis Time between reloads of the shard map
+     */
+    public ShardedDatabase(List<ConnectionPool> shards, long refreshIntervalMillis) throws SQLException {
+        this(shards, refreshIntervalMillis, false);
+    }
+
+    private ShardedDatabase(List<ConnectionPool> shards, long refreshIntervalMillis, boolean ownsExtraShards)
+            throws SQLException {
+        if (shards.isEmpty() || refreshIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid shard settings");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.ownsExtraShards = ownsExtraShards;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.map = loadOrCreateMap();
+        for (int shard = 1; shard < shards.size(); shard++) {
+            reserveIdRange(shard);
+        }
+        this.scatter = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread thread = new Thread(r, "shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shard-map-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, refreshIntervalMillis, refreshIntervalMillis,
+            TimeUnit.MILLISECONDS);
+        logger.info("Sharding accounts over {} databases", shards.size());
+    }
+
+    /**
+     * Process-wide shard set: the default pool as the first shard plus one
+     * pool per {@code host:port/database} entry in DB_SHARDS, which share the
+     * credentials and DB_POOL_* settings of the default pool.
+     * DB_SHARD_MAP_REFRESH_MS (default 5000) sets how often the map is reloaded,
+     * and DB_TRANSFER_RELAY_INTERVAL_MS (default 1000) how often undelivered
+     * cross-shard transfers are retried.
+     * @return Shared shard set, or null if DB_SHARDS is not set
+     */
+    public static synchronized ShardedDatabase getDefault() {
+        if (!defaultResolved) {
+            String extra = Env.getString("DB_SHARDS", "");
+            if (!extra.isBlank()) {
+                List<ConnectionPool> shards = new ArrayList<>();
+                shards.add(ConnectionPool.getDefault());
+                for (String database : extra.split(",")) {
+                    PoolConfig config = PoolConfig.fromEnv();
+                    config.setUrl("jdbc:postgresql://" + database.trim());
+                    shards.add(new ConnectionPool(config));
+                }
+                ShardedDatabase sharded;
+                try {
+                    sharded = new ShardedDatabase(shards, Env.getLong("DB_SHARD_MAP_REFRESH_MS", 5_000), true);
+                } catch (SQLException e) {
+                    throw new RuntimeException("Failed to load the shard map", e);
+                }
+                CrossShardTransfers relay = new CrossShardTransfers(sharded, AccountCache.getDefault());
+                relay.start(Env.getLong("DB_TRANSFER_RELAY_INTERVAL_MS", 1_000));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    relay.close();
+                    sharded.close();
+                }, "shards-shutdown"));
+                defaultShards = sharded;
+            }
+            defaultResolved = true;
+        }
+        return defaultShards;
+    }
+
+    public ShardMap getShardMap() {
+        return map;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public ConnectionPool getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public int shardOf(String accountNumber) {
+        return map.shardOf(accountNumber);
+    }
+
+    /**
+     * Borrow a connection to the shard that owns the account
+     * @param accountNumber Account number
+     * @return Pooled connection
+     * @throws SQLTransientException if the account's bucket is being moved; retry later
+     */
+    public Connection getConnection(String accountNumber) throws SQLException {
+        ShardMap current = map;
+        int bucket = ShardMap.bucketOf(accountNumber);
+        if (current.isMoving(bucket)) {
+            throw new SQLTransientException("Account " + accountNumber + " is being moved between shards");
+        }
+        return shards.get(current.ownerOf(bucket)).getConnection();
+    }
+
+    /**
+     * Run a query on every shard in parallel
+     * @param query Query to run, once per shard
+     * @return One result per shard, in shard order
+     */
+    public <T> List<T> scatter(ShardQuery<T> query) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (ConnectionPool shard : shards) {
+            futures.add(scatter.submit(() -> {
+                try (Connection connection = shard.getConnection()) {
+                    return query.run(connection);
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while querying shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SQLException("Shard query failed", e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reload the shard map from the catalog
+     */
+    public void refresh() throws SQLException {
+        try (Connection connection = shards.get(0).getConnection()) {
+            ShardMap loaded = loadMap(connection);
+            if (loaded != null) {
+                map = loaded;
+            }
+        }
+    }
+
+    /**
+     * Store a bucket's owner and moving flag in the catalog and use them from now on
+     */
+    void publish(int bucket, ShardMap updated) throws SQLException {
+        try (Connection connection = shards.get(0).getConnection();
+             PreparedStatement stmt = connection.prepareStatement(SAVE_BUCKET_SQL)) {
+            stmt.setInt(1, bucket);
+            stmt.setInt(2, updated.ownerOf(bucket));
+            stmt.setBoolean(3, updated.isMoving(bucket));
+            stmt.executeUpdate();
+        }
+        map = updated;
+    }
+
+    private ShardMap loadOrCreateMap() throws SQLException {
+        try (Connection connection = shards.get(0).getConnection()) {
+            ShardMap loaded = loadMap(connection);
+            if (loaded == null) {
+                loaded = ShardMap.uniform(shards.size());
+                connection.setAutoCommit(false);
+                try (PreparedStatement stmt = connection.prepareStatement(CREATE_BUCKET_SQL)) {
+                    for (int bucket = 0; bucket < ShardMap.BUCKETS; bucket++) {
+                        stmt.setInt(1, bucket);
+                        stmt.setInt(2, loaded.ownerOf(bucket));
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+                // Another process may have created the map first
+                loaded = loadMap(connection);
+                logger.info("Created shard map over {} shards", shards.size());
+            }
+            if (loaded.getShardCount() > shards.size()) {
+                throw new IllegalStateException("Shard map uses " + loaded.getShardCount() +
+                    " shards but only " + shards.size() + " are configured");
+            }
+            return loaded;
+        }
+    }
+
+    private void reserveIdRange(int shard) throws SQLException {
+        try (Connection connection = shards.get(shard).getConnection();
+             PreparedStatement stmt = connection.prepareStatement(RESERVE_ID_RANGE_SQL)) {
+            stmt.setLong(1, (long) shard << ID_RANGE_BITS);
+            stmt.executeQuery().close();
+        }
+    }
+
+    private static ShardMap loadMap(Connection connection) throws SQLException {
+        int[] owners = new int[ShardMap.BUCKETS];
+        boolean[] moving = new boolean[ShardMap.BUCKETS];
+        int loaded = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(LOAD_MAP_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int bucket = rs.getInt(1);
+                owners[bucket] = rs.getInt(2);
+                moving[bucket] = rs.getBoolean(3);
+                loaded++;
+            }
+        }
+        if (loaded == 0) {
+            return null;
+        }
+        if (loaded != ShardMap.BUCKETS) {
+            throw new IllegalStateException("Shard map covers " + loaded + " of " + ShardMap.BUCKETS + " buckets");
+        }
+        return ShardMap.of(owners, moving);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("Failed to refresh the shard map", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        scatter.shutdownNow();
+        if (ownsExtraShards) {
+            // The first shard is the default pool, which closes itself
+            for (int shard = 1; shard < shards.size(); shard++) {
+                shards.get(shard).close();
+            }
+        }
+    }
+}
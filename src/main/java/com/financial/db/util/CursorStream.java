@@ -0,0 +1,93 @@
+package com.financial.db.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Adapts an open, cursor-backed ResultSet to a lazy {@link Stream}.
+ *
+ * The stream owns the connection, statement and result set and releases
+ * them when it is closed, so callers must use it in try-with-resources.
+ */
+public final class CursorStream {
+
+    @FunctionalInterface
+    public interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface StatementBinder {
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+
+    private CursorStream() {
+    }
+
+    /**
+     * Run a query through a server-side cursor and stream its rows
+     * @param connection Connection to use; autocommit is switched off so the driver fetches in chunks
+     * @param sql Query to run
+     * @param fetchSize Rows per round trip
+     * @param binder Binds the query parameters
+     * @param reader Maps the current row; may keep state between rows
+     * @return Stream that must be closed to release the connection
+     */
+    public static <T> Stream<T> open(Connection connection, String sql, int fetchSize,
+                                     StatementBinder binder, RowReader<T> reader) throws SQLException {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            connection.setAutoCommit(false);
+            stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(fetchSize);
+            binder.bind(stmt);
+            rs = stmt.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(rs, stmt, connection);
+            throw e;
+        }
+        ResultSet cursor = rs;
+        PreparedStatement statement = stmt;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!cursor.next()) {
+                        return false;
+                    }
+                    action.accept(reader.read(cursor));
+                    return true;
+                } catch (SQLException e) {
+                    throw new RuntimeException("Database query failed", e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+            .onClose(() -> closeQuietly(cursor, statement, connection));
+    }
+
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null) {
+                continue;
+            }
+            try {
+                resource.close();
+            } catch (Exception e) {
+                // Best effort; the pool rolls back the open read transaction when the connection comes back
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.financial.db.util;
+
+/**
+ * Helpers for reading configuration from environment variables with defaults.
+ */
+public final class Env {
+
+    private Env() {
+    }
+
+    public static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isBlank() ? value : defaultValue;
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Environment variable " + name + " is not an integer: " + value, e);
+        }
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Environment variable " + name + " is not a number: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.financial.db.util;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Conversions between {@code TIMESTAMP} values and microseconds since the
+ * epoch, the resolution PostgreSQL stores them at.
+ */
+public final class EpochMicros {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private EpochMicros() {
+    }
+
+    public static long toMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(EPOCH, timestamp);
+    }
+
+    public static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+            Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
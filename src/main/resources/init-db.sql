@@ -8,18 +8,228 @@ CREATE TABLE IF NOT EXISTS accounts (
     type VARCHAR(20) NOT NULL
 );
 
--- Create transactions table
+-- Create transactions table, range-partitioned by month on timestamp.
+-- The primary key has to include the partition key. BIGSERIAL rather than an
+-- identity column because identity columns on partitioned tables need PostgreSQL 17.
 CREATE TABLE IF NOT EXISTS transactions (
-    id SERIAL PRIMARY KEY,
+    id BIGSERIAL,
     account_number VARCHAR(20) NOT NULL,
     amount DECIMAL(15,2) NOT NULL,
     type VARCHAR(20) NOT NULL,
     timestamp TIMESTAMP NOT NULL,
     description TEXT,
+    PRIMARY KEY (id, timestamp),
     FOREIGN KEY (account_number) REFERENCES accounts(account_number)
-);
+) PARTITION BY RANGE (timestamp);
+
+-- Monthly partitions for the past year and the next three months. There is no
+-- default partition, so rows outside every partition are rejected;
+-- PartitionManager (java -jar app.jar maintain-partitions) creates later ones.
+DO $$
+DECLARE
+    month DATE;
+BEGIN
+    FOR i IN -12..3 LOOP
+        month := date_trunc('month', CURRENT_DATE)::date + make_interval(months => i);
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                       'transactions_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+    END LOOP;
+END;
+$$;
 
 -- Create indexes
 CREATE INDEX IF NOT EXISTS idx_account_number ON accounts(account_number);
-CREATE INDEX IF NOT EXISTS idx_transactions_account ON transactions(account_number);
-CREATE INDEX IF NOT EXISTS idx_transactions_timestamp ON transactions(timestamp);
\ No newline at end of file
+-- Indexes on the partitioned table are created on every partition.
+-- Serves per-account reads newest first and keyset pagination; also covers lookups by account_number alone
+CREATE INDEX IF NOT EXISTS idx_transactions_account_ts_id ON transactions(account_number, timestamp DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_transactions_timestamp ON transactions(timestamp);
+-- Running per-account totals, maintained by the trigger below in the same
+-- database transaction as every insert into transactions
+CREATE TABLE IF NOT EXISTS account_balances (
+    account_number VARCHAR(20) PRIMARY KEY REFERENCES accounts(account_number),
+    total_amount DECIMAL(20,2) NOT NULL,
+    transaction_count BIGINT NOT NULL,
+    last_activity TIMESTAMP NOT NULL
+);
+
+-- Hot accounts spread their balance and aggregates over several slot rows so
+-- concurrent postings do not all queue on one row lock. A posting uses slot
+-- pg_backend_pid() % slots, so one connection always uses the same slot. An
+-- account's balance is accounts.balance plus its slot balances, and its
+-- aggregates are account_balances plus its slot aggregates. HotAccounts folds
+-- the slots back into the account periodically. Slot rows are never deleted,
+-- so a posting racing with a change of mode is still counted.
+CREATE TABLE IF NOT EXISTS hot_accounts (
+    account_number VARCHAR(20) PRIMARY KEY REFERENCES accounts(account_number),
+    slots SMALLINT NOT NULL CHECK (slots > 0)
+);
+
+CREATE TABLE IF NOT EXISTS account_balance_slots (
+    account_number VARCHAR(20) NOT NULL REFERENCES accounts(account_number),
+    slot SMALLINT NOT NULL,
+    balance DECIMAL(15,2) NOT NULL DEFAULT 0,
+    total_amount DECIMAL(20,2) NOT NULL DEFAULT 0,
+    transaction_count BIGINT NOT NULL DEFAULT 0,
+    last_activity TIMESTAMP,
+    PRIMARY KEY (account_number, slot)
+);
+
+-- Aggregates per account with the slot aggregates of hot accounts folded in
+CREATE OR REPLACE VIEW account_balance_totals AS
+SELECT account_number, SUM(total_amount) AS total_amount,
+       SUM(transaction_count)::bigint AS transaction_count, MAX(last_activity) AS last_activity
+FROM (
+    SELECT account_number, total_amount, transaction_count, last_activity FROM account_balances
+    UNION ALL
+    SELECT account_number, total_amount, transaction_count, last_activity FROM account_balance_slots
+) parts
+GROUP BY account_number
+HAVING SUM(transaction_count) > 0;
+
+-- Ledger balance of each account at the end of every snapshot period: the sum
+-- of its rows dated before snapshot_at. Only accounts with rows in the period
+-- get one, so an account's balance at any time is its latest snapshot at or
+-- before that time plus its rows since. BalanceSnapshots writes a period in one
+-- transaction and records it in balance_snapshot_runs.
+CREATE TABLE IF NOT EXISTS balance_snapshots (
+    account_number VARCHAR(20) NOT NULL REFERENCES accounts(account_number),
+    snapshot_at TIMESTAMP NOT NULL,
+    balance DECIMAL(20,2) NOT NULL,
+    PRIMARY KEY (account_number, snapshot_at)
+);
+
+CREATE TABLE IF NOT EXISTS balance_snapshot_runs (
+    snapshot_at TIMESTAMP PRIMARY KEY,
+    taken_at TIMESTAMP NOT NULL
+);
+
+-- Statement-level so batch inserts and COPY fold into one upsert per account;
+-- rows are upserted in account order to keep concurrent batches from deadlocking.
+-- Rows for hot accounts go to this connection's slot instead. Rows dated before
+-- the latest balance snapshot, e.g. back-filled history, are added to every
+-- later snapshot of their account so those stay exact. Rows dated more than a
+-- minute before they are written count as back-fill and take the balance
+-- snapshot lock in shared mode until commit, so a snapshot run, which takes it
+-- exclusively, either sees them or is seen by this check; BalanceSnapshots
+-- waits longer than that minute before it snapshots a period.
+CREATE OR REPLACE FUNCTION apply_transaction_aggregates() RETURNS trigger AS $$
+DECLARE
+    oldest TIMESTAMP;
+BEGIN
+    UPDATE account_balance_slots s SET
+        total_amount = s.total_amount + n.total_amount,
+        transaction_count = s.transaction_count + n.transaction_count,
+        last_activity = GREATEST(s.last_activity, n.last_activity)
+    FROM (
+        SELECT t.account_number, h.slots, SUM(t.amount) AS total_amount,
+               COUNT(*) AS transaction_count, MAX(t.timestamp) AS last_activity
+        FROM new_transactions t JOIN hot_accounts h ON h.account_number = t.account_number
+        GROUP BY t.account_number, h.slots
+    ) n
+    WHERE s.account_number = n.account_number AND s.slot = pg_backend_pid() % n.slots;
+
+    INSERT INTO account_balances AS b (account_number, total_amount, transaction_count, last_activity)
+    SELECT account_number, SUM(amount), COUNT(*), MAX(timestamp)
+    FROM new_transactions
+    WHERE account_number NOT IN (SELECT account_number FROM hot_accounts)
+    GROUP BY account_number
+    ORDER BY account_number
+    ON CONFLICT (account_number) DO UPDATE SET
+        total_amount = b.total_amount + EXCLUDED.total_amount,
+        transaction_count = b.transaction_count + EXCLUDED.transaction_count,
+        last_activity = GREATEST(b.last_activity, EXCLUDED.last_activity);
+
+    SELECT MIN(timestamp) INTO oldest FROM new_transactions;
+    IF oldest < LOCALTIMESTAMP - INTERVAL '1 minute' THEN
+        PERFORM pg_advisory_xact_lock_shared(hashtext('balance_snapshots'));
+        -- Runs after the lock wait, so it sees a run that committed meanwhile
+        IF oldest < (SELECT MAX(snapshot_at) FROM balance_snapshot_runs) THEN
+            UPDATE balance_snapshots s SET balance = s.balance + d.amount
+            FROM (
+                SELECT p.account_number, p.snapshot_at, SUM(t.amount) AS amount
+                FROM new_transactions t
+                JOIN balance_snapshots p ON p.account_number = t.account_number AND p.snapshot_at > t.timestamp
+                GROUP BY p.account_number, p.snapshot_at
+            ) d
+            WHERE s.account_number = d.account_number AND s.snapshot_at = d.snapshot_at;
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER transactions_aggregate
+    AFTER INSERT ON transactions
+    REFERENCING NEW TABLE AS new_transactions
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION apply_transaction_aggregates();
+
+-- Sharding. shard_buckets is only used in the first shard, as the catalog
+-- assigning hash buckets of account numbers to shards.
+CREATE TABLE IF NOT EXISTS shard_buckets (
+    bucket INT PRIMARY KEY,
+    shard INT NOT NULL,
+    moving BOOLEAN NOT NULL DEFAULT false
+);
+
+-- Cross-shard transfers debited on this shard and waiting to be credited on
+-- another. No foreign key: the payer may later move to a different shard.
+CREATE TABLE IF NOT EXISTS transfer_outbox (
+    transfer_id UUID PRIMARY KEY,
+    from_account VARCHAR(20) NOT NULL,
+    to_account VARCHAR(20) NOT NULL,
+    amount DECIMAL(15,2) NOT NULL,
+    description TEXT,
+    status VARCHAR(10) NOT NULL DEFAULT 'PENDING',
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+CREATE INDEX IF NOT EXISTS idx_transfer_outbox_pending ON transfer_outbox(created_at) WHERE status = 'PENDING';
+
+-- Cross-shard transfers already credited on this shard, so redelivery is a no-op
+CREATE TABLE IF NOT EXISTS transfer_inbox (
+    transfer_id UUID NOT NULL,
+    account_number VARCHAR(20) NOT NULL REFERENCES accounts(account_number),
+    received_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (transfer_id, account_number)
+);
+
+-- Change feed. Inserts into transactions and balance changes on accounts are
+-- announced on the ledger_changes channel when the writing transaction
+-- commits, as pipe-separated payloads with the account number last:
+--   T|id|type|amount|timestamp in epoch microseconds|account_number
+--   R|first id|last id    (more than 100 rows in one statement; read them from the table)
+--   A|balance|account_number
+CREATE OR REPLACE FUNCTION notify_transaction_inserts() RETURNS trigger AS $$
+BEGIN
+    IF (SELECT COUNT(*) FROM new_transactions) > 100 THEN
+        PERFORM pg_notify('ledger_changes', 'R|' || MIN(id) || '|' || MAX(id)) FROM new_transactions;
+    ELSE
+        PERFORM pg_notify('ledger_changes', 'T|' || id || '|' || type || '|' || amount || '|' ||
+                          (EXTRACT(EPOCH FROM timestamp) * 1000000)::bigint || '|' || account_number)
+        FROM new_transactions
+        ORDER BY id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER transactions_notify
+    AFTER INSERT ON transactions
+    REFERENCING NEW TABLE AS new_transactions
+    FOR EACH STATEMENT
+    EXECUTE FUNCTION notify_transaction_inserts();
+
+CREATE OR REPLACE FUNCTION notify_balance_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.balance = NEW.balance THEN
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('ledger_changes', 'A|' || NEW.balance || '|' || NEW.account_number);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER accounts_notify
+    AFTER INSERT OR UPDATE OF balance ON accounts
+    FOR EACH ROW
+    EXECUTE FUNCTION notify_balance_change();